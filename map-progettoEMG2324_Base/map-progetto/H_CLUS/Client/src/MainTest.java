@@ -88,11 +88,27 @@ public class MainTest {
         out.writeObject(fileName);
         String risposta = (String) (in.readObject());
         if (risposta.equals("OK"))
-            System.out.println(in.readObject()); // Stampa il dendrogramma inviato dal server
+            printDendrogram(); // Stampa il dendrogramma inviato dal server
         else
             System.out.println(risposta); // Stampa un messaggio di errore
     }
 
+    /**
+     * Riceve dal server un dendrogramma, inviato come sequenza di frammenti di testo terminata da {@code null},
+     * e stampa ciascun frammento appena arriva, senza attendere il dendrogramma completo.
+     *
+     * @throws IOException Se si verificano errori di input/output durante la comunicazione.
+     * @throws ClassNotFoundException Se la risposta ricevuta dal server non può essere interpretata correttamente.
+     */
+    private void printDendrogram() throws IOException, ClassNotFoundException {
+        Object chunk;
+        while ((chunk = in.readUnshared()) != null) {
+            System.out.print(chunk);
+            System.out.flush();
+        }
+        System.out.println();
+    }
+
     /**
      * Invia al server una richiesta per apprendere un dendrogramma.
      * @throws IOException Se si verificano errori di input/output durante la comunicazione.
@@ -112,7 +128,7 @@ public class MainTest {
 
         String risposta= (String) (in.readObject());
         if(risposta.equals("OK")) {
-            System.out.println(in.readObject()); // stampo il dendrogramma che il server mi sta inviando
+            printDendrogram(); // stampo il dendrogramma che il server mi sta inviando
             System.out.println("Inserisci il nome del file con una di queste estensioni: \n.txt, .csv, .json, .xml, .dat, .bin, .ser");
             String fileName=Keyboard.readString();
             out.writeObject(fileName);
@@ -2,7 +2,9 @@ package clustering;
 
 import data.Data;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
@@ -21,6 +23,8 @@ import java.util.TreeSet;
  * @author Elisa Vittoria Cosmai
  */
 public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
+	/** Versione della forma serializzata dei cluster, calcolata sulla classe con cui sono stati salvati i modelli. */
+	private static final long serialVersionUID = 4562681018408731177L;
 	/**
 	 * Set di interi che rappresenta gli indici degli esempi appartenenti al cluster.
 	 * L'uso di un {@link TreeSet} garantisce l'ordine naturale degli elementi.
@@ -123,11 +127,24 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 */
 	public String toString(Data data) {
 		StringBuilder str = new StringBuilder();
+		try {
+			write(str, data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // StringBuilder non genera IOException
+		}
+		return str.toString();
+	}
 
+	/**
+	 * Scrive i dati degli esempi del cluster, nello stesso formato di {@link #toString(Data)}, un esempio alla volta.
+	 *
+	 * @param out destinazione della rappresentazione testuale
+	 * @param data il dataset di riferimento
+	 * @throws IOException se si verifica un errore durante la scrittura
+	 */
+	void write(Appendable out, Data data) throws IOException {
 		for (Integer clusteredDatum : clusteredData)
-			str.append("<[").append(data.getExample(clusteredDatum)).append("]>");
-
-		return str.toString();
+			out.append("<[").append(data.getExample(clusteredDatum).toString()).append("]>");
 	}
 
 
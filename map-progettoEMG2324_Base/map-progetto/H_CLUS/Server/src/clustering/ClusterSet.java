@@ -4,7 +4,9 @@ import data.Data;
 import data.InvalidSizeException;
 import distance.ClusterDistance;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 
 /**
  * La classe ClusterSet rappresenta un insieme di cluster in un dataset.
@@ -16,6 +18,8 @@ import java.io.Serializable;
  * @author Elisa Vittoria Cosmai
  */
 class ClusterSet implements Serializable {
+	/** Versione della forma serializzata dei ClusterSet, che non deve cambiare quando si aggiungono metodi. */
+	private static final long serialVersionUID = -2951336249391790109L;
 	/** Array che contiene i cluster */
 	private final Cluster[] C;
 	/** Indice dell'ultimo cluster aggiunto */
@@ -133,11 +137,29 @@ class ClusterSet implements Serializable {
 	 */
 	public String toString(Data data) {
 		StringBuilder str = new StringBuilder();
+		try {
+			write(str, data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // StringBuilder non genera IOException
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Scrive i cluster con i dati degli esempi associati, nello stesso formato di {@link #toString(Data)},
+	 * un cluster alla volta.
+	 *
+	 * @param out Destinazione della rappresentazione testuale.
+	 * @param data Dataset utilizzato per il clustering.
+	 * @throws IOException Se si verifica un errore durante la scrittura.
+	 */
+	void write(Appendable out, Data data) throws IOException {
 		for (int i = 0; i < C.length; i++) {
 			if (C[i] != null) {
-				str.append("cluster").append(i).append(":").append(C[i].toString(data)).append("\n");
+				out.append("cluster").append(Integer.toString(i)).append(":");
+				C[i].write(out, data);
+				out.append("\n");
 			}
 		}
-		return str.toString();
 	}
 }
@@ -2,7 +2,9 @@ package clustering;
 
 import data.Data;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 
 /**
  * La classe Dendrogram rappresenta un dendrogramma utilizzato per modellare gerarchie di cluster
@@ -14,6 +16,8 @@ import java.io.Serializable;
  * @author Elisa Vittoria Cosmai
  */
 class Dendrogram implements Serializable {
+    /** Versione della forma serializzata del dendrogramma, fissata al valore dei modelli già salvati. */
+    private static final long serialVersionUID = 2633771947011792452L;
     /**
      * Array che rappresenta i livelli del dendrogramma, ciascuno contenente un {@link ClusterSet}.
      */
@@ -89,15 +93,31 @@ class Dendrogram implements Serializable {
      */
     public String toString(Data data) {
         StringBuilder v = new StringBuilder();
+        try {
+            write(v, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder non genera IOException
+        }
+        return v.toString();
+    }
+
+    /**
+     * Scrive il dendrogramma nello stesso formato di {@link #toString(Data)}, livello per livello e cluster per cluster,
+     * senza costruirne in memoria la rappresentazione testuale completa.
+     *
+     * @param out Destinazione della rappresentazione testuale.
+     * @param data Il dataset utilizzato per il clustering.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    void write(Appendable out, Data data) throws IOException {
         for (int i = 0; i < tree.length; i++) {
-            v.append("level").append(i).append(":\n");
+            out.append("level").append(Integer.toString(i)).append(":\n");
             if (tree[i] != null) {
-                v.append(tree[i].toString(data));
+                tree[i].write(out, data);
             } else {
-                v.append("null");
+                out.append("null");
             }
-            v.append("\n");
+            out.append("\n");
         }
-        return v.toString();
     }
 }
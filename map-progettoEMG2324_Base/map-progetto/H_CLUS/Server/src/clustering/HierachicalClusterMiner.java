@@ -18,6 +18,8 @@ import java.nio.file.FileAlreadyExistsException;
  * @author Elisa Vittoria Cosmai
  */
 public class HierachicalClusterMiner implements Serializable {
+	/** Versione della forma serializzata del modello, uguale a quella dei modelli salvati in {@link #DIRECTORY_PATH}. */
+	private static final long serialVersionUID = 7758586111552004231L;
 	/**
 	 * Dendrogramma che rappresenta la gerarchia dei cluster generati dal processo di clustering.
 	 */
@@ -103,6 +105,18 @@ public class HierachicalClusterMiner implements Serializable {
 		return dendrogram.toString(data);
 	}
 
+	/**
+	 * Scrive il dendrogramma nello stesso formato di {@link #toString(Data)}, livello per livello e cluster per cluster,
+	 * senza costruirne in memoria la rappresentazione testuale completa.
+	 *
+	 * @param out La destinazione della rappresentazione testuale.
+	 * @param data Il dataset di riferimento.
+	 * @throws IOException Se si verifica un errore durante la scrittura.
+	 */
+	public void write(Appendable out, Data data) throws IOException {
+		dendrogram.write(out, data);
+	}
+
 	/**
 	 * Carica un'istanza di HierarchicalClusterMiner da un file serializzato.
 	 *
@@ -10,6 +10,7 @@ import distance.AverageLinkDistance;
 import distance.ClusterDistance;
 import distance.SingleLinkDistance;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -49,7 +50,8 @@ class ServerOneClient extends Thread {
      */
     public ServerOneClient(Socket socket) throws IOException {
         this.clientSocket = socket;
-        this.out = new ObjectOutputStream(clientSocket.getOutputStream());
+        this.out = new ObjectOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+        this.out.flush(); // il client attende l'intestazione dello stream prima di inviare richieste
         this.in = new ObjectInputStream(clientSocket.getInputStream());
         this.start();
     }
@@ -80,6 +82,7 @@ class ServerOneClient extends Thread {
                         out.writeObject("Tipo di richiesta non valido");
                         break;
                 }
+                out.flush();
             }
         } catch (IOException e) {
             System.out.println("Disconnessione client: " + clientSocket);
@@ -134,7 +137,7 @@ class ServerOneClient extends Thread {
             clustering.mine(data, distance);
 
             out.writeObject("OK");
-            out.writeObject(clustering.toString(data));
+            sendDendrogram(clustering);
 
             String fileName = (String) in.readObject();
 
@@ -160,22 +163,38 @@ class ServerOneClient extends Thread {
      */
     private void handleLoadDendrogramFromFile() throws IOException, ClassNotFoundException {
         String fileName = (String) in.readObject();
+        HierachicalClusterMiner clustering;
         try {
-            HierachicalClusterMiner clustering = HierachicalClusterMiner.loadHierachicalClusterMiner(fileName);
+            clustering = HierachicalClusterMiner.loadHierachicalClusterMiner(fileName);
+        } catch (IOException | ClassNotFoundException e) {
+            out.writeObject(e.getMessage());
+            return;
+        }
 
-            if (data == null) {
-                out.writeObject("Dati non caricati");
-                return;
-            }
+        if (data == null) {
+            out.writeObject("Dati non caricati");
+            return;
+        }
 
-            if (clustering.getDepth() > data.getNumberOfExample()) {
-                out.writeObject("Numero di esempi maggiore della profondità del dendrogramma!");
-            } else {
-                out.writeObject("OK");
-                out.writeObject(clustering.toString(data));
-            }
-        } catch (IOException | ClassNotFoundException | InvalidDepthException e) {
-            out.writeObject(e.getMessage());
+        if (clustering.getDepth() > data.getNumberOfExample()) {
+            out.writeObject("Numero di esempi maggiore della profondità del dendrogramma!");
+        } else {
+            out.writeObject("OK");
+            // Gli errori di comunicazione durante l'invio chiudono la connessione, come nelle altre richieste
+            sendDendrogram(clustering);
+        }
+    }
+
+    /**
+     * Invia al client un dendrogramma con i dati degli esempi, livello per livello,
+     * come sequenza di frammenti terminata da {@code null} (vedi {@link ChunkedWriter}).
+     *
+     * @param clustering il dendrogramma da inviare
+     * @throws IOException se si verifica un errore di I/O
+     */
+    private void sendDendrogram(HierachicalClusterMiner clustering) throws IOException {
+        try (ChunkedWriter writer = new ChunkedWriter(out)) {
+            clustering.write(writer, data);
         }
     }
 }
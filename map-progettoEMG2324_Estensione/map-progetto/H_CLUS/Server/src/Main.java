@@ -23,8 +23,11 @@ public class Main {
         String address = "0.0.0.0";
         int port = 8080;
         String botToken = "Place Bot token here";
+        int threads = Runtime.getRuntime().availableProcessors();
+        long cacheMegabytes = Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024);
 
-        // Sovrascrive i valori di default di address e port se presenti in args
+        // Sovrascrive i valori di default di address, port, numero di thread del clustering
+        // e memoria dei dataset condivisi (in MiB) se presenti in args
         if (args.length > 0) {
             address = args[0];
         }
@@ -36,10 +39,35 @@ public class Main {
                 return;
             }
         }
+        if (args.length > 2) {
+            try {
+                threads = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                System.err.println("Errore: il numero di thread deve essere un numero intero.");
+                return;
+            }
+            if (threads < 1) {
+                System.err.println("Errore: il numero di thread deve essere almeno 1.");
+                return;
+            }
+        }
+        if (args.length > 3) {
+            try {
+                cacheMegabytes = Long.parseLong(args[3]);
+            } catch (NumberFormatException e) {
+                System.err.println("Errore: la memoria dei dataset deve essere un numero intero di MiB.");
+                return;
+            }
+            if (cacheMegabytes < 0) {
+                System.err.println("Errore: la memoria dei dataset non può essere negativa.");
+                return;
+            }
+        }
 
         // Avvio del server
-        System.out.println("Server avviato su " + address + ":" + port);
-        MultiServer.instanceMultiServer(botToken, address, port);
+        System.out.println("Server avviato su " + address + ":" + port + " (thread di clustering: " + threads
+                + ", memoria dei dataset: " + cacheMegabytes + " MiB)");
+        MultiServer.instanceMultiServer(botToken, address, port, threads, cacheMegabytes * 1024 * 1024);
 
     }
 
@@ -0,0 +1,246 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+
+import java.util.Arrays;
+
+/**
+ * Motore di clustering dedicato alla distanza Single Link su dati con pochi attributi, basato
+ * sull'algoritmo di Borůvka con ricerca "dual-tree" su un {@link KdTree}.
+ *
+ * A ogni passo ciascuna componente dell'albero di copertura in costruzione cerca l'arco più corto
+ * verso un'altra componente, e tutti gli archi trovati vengono aggiunti insieme: i passi sono al più
+ * {@code log2(n)}. La ricerca visita coppie di nodi dell'albero k-d e scarta le coppie i cui esempi
+ * appartengono tutti alla stessa componente, oppure i cui box distano più dell'arco peggiore ancora
+ * cercato dagli esempi del primo nodo; per dati con pochi attributi il costo complessivo è vicino
+ * a O(n log n) invece di O(n^2). Il minimo albero ricoprente viene conservato nel dendrogramma e
+ * convertito nella sequenza di fusioni da {@link SpanningTreeMerger}, come per gli altri motori Single Link.
+ */
+class BoruvkaEngine implements MiningEngine {
+	/** Numero massimo di attributi per cui l'albero k-d resta efficace. */
+	static final int MAX_ATTRIBUTES = 10;
+	/** Numero minimo di esempi per cui conviene costruire l'indice invece di confrontare tutte le coppie. */
+	static final int MIN_EXAMPLES = 1 << 10;
+	/**
+	 * Margine relativo con cui si confronta la distanza tra i box: la distanza tra gli esempi è calcolata
+	 * con un ordine delle operazioni diverso e può differire di qualche unità nell'ultima cifra.
+	 */
+	private static final double SLACK = 1e-12;
+
+	/** Dataset su cui è eseguito il clustering. */
+	private Data data;
+	/** Indice spaziale sugli esempi. */
+	private KdTree tree;
+	/** Padre di ciascun esempio nella struttura union-find delle componenti. */
+	private int[] parent;
+	/** Componente di ciascun esempio all'inizio del passo corrente. */
+	private int[] component;
+	/** Componente comune a tutti gli esempi di ciascun nodo, oppure -1 se sono in componenti diverse. */
+	private int[] nodeComponent;
+	/** Massima distanza dell'arco candidato delle componenti degli esempi di ciascun nodo. */
+	private double[] bound;
+	/** Distanza dell'arco candidato di ciascuna componente. */
+	private double[] candidateDistance;
+	/** Estremo interno alla componente dell'arco candidato. */
+	private int[] candidateFrom;
+	/** Estremo esterno alla componente dell'arco candidato. */
+	private int[] candidateTo;
+
+	/**
+	 * Verifica se il motore è adatto a un dataset: con molti attributi l'albero k-d non riesce
+	 * a scartare coppie di nodi, mentre per pochi esempi la costruzione dell'indice non è conveniente.
+	 *
+	 * @param data Dataset su cui eseguire il clustering.
+	 * @return {@code true} se il dataset ha abbastanza esempi e pochi attributi.
+	 */
+	static boolean suits(Data data) {
+		return data.getNumberOfExample() >= MIN_EXAMPLES && data.getNumberOfAttributes() <= MAX_ATTRIBUTES;
+	}
+
+	/**
+	 * Costruisce il minimo albero ricoprente con l'algoritmo di Borůvka e da esso i livelli del dendrogramma.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster (Single Link).
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	@Override
+	public void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException {
+		int n = data.getNumberOfExample();
+		if (n <= 1) {
+			throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
+		}
+
+		this.data = data;
+		this.tree = new KdTree(data);
+		this.parent = new int[n];
+		this.component = new int[n];
+		this.nodeComponent = new int[tree.size()];
+		this.bound = new double[tree.size()];
+		this.candidateDistance = new double[n];
+		this.candidateFrom = new int[n];
+		this.candidateTo = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+		}
+
+		int[] from = new int[n - 1];
+		int[] to = new int[n - 1];
+		double[] weight = new double[n - 1];
+		int edges = 0;
+		Integer[] found = new Integer[n];
+		while (edges < n - 1) {
+			for (int i = 0; i < n; i++) {
+				component[i] = find(i);
+			}
+			// I nodi sono numerati in preordine: visitandoli al contrario i figli precedono il padre
+			for (int v = tree.size() - 1; v >= 0; v--) {
+				nodeComponent[v] = tree.isLeaf(v) ? leafComponent(v)
+						: nodeComponent[tree.left(v)] == nodeComponent[tree.right(v)] ? nodeComponent[tree.left(v)] : -1;
+			}
+			Arrays.fill(bound, Double.POSITIVE_INFINITY);
+			Arrays.fill(candidateDistance, Double.POSITIVE_INFINITY);
+
+			search(tree.root(), tree.root());
+
+			// Aggiunge gli archi candidati in ordine di distanza, saltando quelli che chiuderebbero un ciclo
+			// quando due componenti hanno scelto archi diversi della stessa lunghezza
+			int count = 0;
+			for (int c = 0; c < n; c++) {
+				if (component[c] == c && candidateDistance[c] < Double.POSITIVE_INFINITY) {
+					found[count++] = c;
+				}
+			}
+			Arrays.sort(found, 0, count, (c1, c2) -> Double.compare(candidateDistance[c1], candidateDistance[c2]));
+			for (int f = 0; f < count; f++) {
+				int c = found[f];
+				int r1 = find(candidateFrom[c]);
+				int r2 = find(candidateTo[c]);
+				if (r1 != r2) {
+					parent[Math.max(r1, r2)] = Math.min(r1, r2);
+					from[edges] = candidateFrom[c];
+					to[edges] = candidateTo[c];
+					weight[edges] = candidateDistance[c];
+					edges++;
+				}
+			}
+		}
+
+		SpanningTree spanningTree = new SpanningTree(n, from, to, weight);
+		dendrogram.setSpanningTree(spanningTree);
+		dendrogram.setMerges(spanningTree.merges(dendrogram.getDepth() - 1, data));
+	}
+
+	/**
+	 * Aggiorna gli archi candidati delle componenti degli esempi del nodo {@code q} con gli esempi
+	 * del nodo {@code r}, visitando soltanto le coppie di nodi che possono migliorarli.
+	 *
+	 * @param q Nodo degli esempi di cui si cerca il vicino.
+	 * @param r Nodo dei possibili vicini.
+	 */
+	private void search(int q, int r) {
+		if (nodeComponent[q] != -1 && nodeComponent[q] == nodeComponent[r]) {
+			return;
+		}
+		// A parità di distanza l'arco candidato non cambia: la coppia si scarta anche se il limite è raggiunto
+		if (tree.minDistance(q, r) * (1 - SLACK) >= bound[q]) {
+			return;
+		}
+
+		if (tree.isLeaf(q)) {
+			if (tree.isLeaf(r)) {
+				scan(q, r);
+			} else {
+				searchChildren(q, r);
+			}
+			return;
+		}
+		if (tree.isLeaf(r)) {
+			search(tree.left(q), r);
+			search(tree.right(q), r);
+		} else {
+			searchChildren(tree.left(q), r);
+			searchChildren(tree.right(q), r);
+		}
+		bound[q] = Math.max(bound[tree.left(q)], bound[tree.right(q)]);
+	}
+
+	/**
+	 * Visita i figli del nodo {@code r} per il nodo {@code q}, a partire dal più vicino, così che
+	 * gli archi trovati nel primo riducano il limite usato per scartare il secondo.
+	 *
+	 * @param q Nodo degli esempi di cui si cerca il vicino.
+	 * @param r Nodo interno dei possibili vicini.
+	 */
+	private void searchChildren(int q, int r) {
+		int near = tree.left(r);
+		int far = tree.right(r);
+		if (tree.minDistance(q, far) < tree.minDistance(q, near)) {
+			near = tree.right(r);
+			far = tree.left(r);
+		}
+		search(q, near);
+		search(q, far);
+	}
+
+	/**
+	 * Confronta tutte le coppie di esempi di due foglie in componenti diverse e aggiorna il limite della prima.
+	 *
+	 * @param q Foglia degli esempi di cui si cerca il vicino.
+	 * @param r Foglia dei possibili vicini.
+	 */
+	private void scan(int q, int r) {
+		double max = 0.0;
+		for (int p = tree.start(q); p < tree.end(q); p++) {
+			int i = tree.example(p);
+			int c = component[i];
+			for (int s = tree.start(r); s < tree.end(r); s++) {
+				int j = tree.example(s);
+				if (component[j] != c) {
+					double dist = data.distance(i, j);
+					if (dist < candidateDistance[c]) {
+						candidateDistance[c] = dist;
+						candidateFrom[c] = i;
+						candidateTo[c] = j;
+					}
+				}
+			}
+			max = Math.max(max, candidateDistance[c]);
+		}
+		bound[q] = max;
+	}
+
+	/**
+	 * Restituisce la componente comune agli esempi di una foglia.
+	 *
+	 * @param v Foglia.
+	 * @return La componente comune, oppure -1 se gli esempi sono in componenti diverse.
+	 */
+	private int leafComponent(int v) {
+		int c = component[tree.example(tree.start(v))];
+		for (int p = tree.start(v) + 1; p < tree.end(v); p++) {
+			if (component[tree.example(p)] != c) {
+				return -1;
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Restituisce la radice della struttura union-find che contiene l'esempio indicato.
+	 *
+	 * @param i Indice dell'esempio.
+	 * @return Radice della componente dell'esempio.
+	 */
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+}
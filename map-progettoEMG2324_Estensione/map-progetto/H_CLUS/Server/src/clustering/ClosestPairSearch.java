@@ -0,0 +1,209 @@
+package clustering;
+
+import data.InvalidSizeException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ricerca della coppia di cluster più vicina tra le {@code k(k-1)/2} coppie di posizioni {@code p < q}
+ * di un ClusterSet, eseguita in sequenza oppure in parallelo su un {@link ForkJoinPool} dedicato.
+ *
+ * Lo spazio triangolare delle coppie viene diviso per righe in blocchi con lo stesso numero di coppie;
+ * ogni blocco calcola per ciascuna delle sue righe il vicino più prossimo con il confronto stretto
+ * della ricerca esaustiva, e i minimi delle righe vengono poi ridotti in ordine di posizione.
+ * Il risultato è quindi sempre la prima coppia nell'ordine del ClusterSet tra quelle a distanza minima,
+ * identico a quello della ricerca sequenziale indipendentemente dal numero di thread.
+ *
+ * {@link LanceWilliamsEngine} la usa a ogni livello sulla matrice delle distanze tra cluster e
+ * {@link NeighbourHeapEngine} per i vicini iniziali di tutti gli esempi: entrambi la ricevono da
+ * {@link HierachicalClusterMiner} costruita sul pool del server, per cui la ricerca è parallela
+ * quando il server dispone di più thread e le coppie sono più di quelle di un blocco.
+ */
+class ClosestPairSearch {
+	/** Numero minimo di coppie per cui conviene suddividere ulteriormente un blocco. */
+	private static final long BLOCK_PAIRS = 1 << 12;
+
+	/** Pool su cui eseguire i blocchi, oppure {@code null} per la ricerca sequenziale. */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Distanza tra i cluster che occupano due posizioni del ClusterSet.
+	 */
+	interface PairDistance {
+		/**
+		 * Calcola la distanza tra i cluster nelle posizioni indicate; può essere invocata da più thread.
+		 *
+		 * @param p Posizione del primo cluster.
+		 * @param q Posizione del secondo cluster, con {@code p < q}.
+		 * @return La distanza tra i due cluster.
+		 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+		 */
+		double distance(int p, int q) throws InvalidSizeException;
+	}
+
+	/**
+	 * Costruisce la ricerca sul pool specificato.
+	 *
+	 * @param pool Pool dedicato al clustering, oppure {@code null} per la ricerca sequenziale.
+	 */
+	ClosestPairSearch(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Restituisce il pool su cui è eseguita la ricerca, condiviso con il calcolo della matrice delle distanze.
+	 *
+	 * @return Il pool dedicato al clustering, oppure {@code null} per la ricerca sequenziale.
+	 */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Trova la coppia di posizioni più vicina; a parità di distanza restituisce la prima nell'ordine del ClusterSet.
+	 *
+	 * @param k Numero di cluster, almeno 2.
+	 * @param distance Distanza tra i cluster di due posizioni.
+	 * @return Le posizioni {@code {p, q}} della coppia, con {@code p < q}.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	int[] closestPair(int k, PairDistance distance) throws InvalidSizeException {
+		int[] nearest = new int[k];
+		double[] nearestDistance = new double[k];
+		nearestFollowers(k, distance, nearest, nearestDistance);
+
+		// Riduzione deterministica: le righe sono esaminate in ordine di posizione
+		double minD = Double.MAX_VALUE;
+		int p1 = 0;
+		int p2 = 1;
+		for (int p = 0; p < k - 1; p++) {
+			if (nearestDistance[p] < minD) {
+				minD = nearestDistance[p];
+				p1 = p;
+				p2 = nearest[p];
+			}
+		}
+		return new int[] {p1, p2};
+	}
+
+	/**
+	 * Calcola per ogni posizione {@code p < k-1} il vicino più prossimo tra le posizioni che la seguono;
+	 * a parità di distanza viene scelta la posizione minore. Se nessuna distanza è inferiore a
+	 * {@link Double#MAX_VALUE} il vicino è la posizione {@code p+1}, come nella ricerca esaustiva.
+	 *
+	 * @param k Numero di cluster.
+	 * @param distance Distanza tra i cluster di due posizioni.
+	 * @param nearest Array in cui scrivere la posizione del vicino di ciascuna riga.
+	 * @param nearestDistance Array in cui scrivere la distanza dal vicino di ciascuna riga.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	void nearestFollowers(int k, PairDistance distance, int[] nearest, double[] nearestDistance) throws InvalidSizeException {
+		if (pool == null || pairs(k, 0, k) <= BLOCK_PAIRS) {
+			scan(k, 0, k, distance, nearest, nearestDistance);
+			return;
+		}
+		try {
+			pool.invoke(new Block(k, 0, k, distance, nearest, nearestDistance));
+		} catch (RuntimeException e) {
+			// Il pool può rilanciare una copia dell'eccezione: si risale alla causa originale
+			for (Throwable t = e; t != null; t = t.getCause()) {
+				if (t instanceof InvalidSizeException) {
+					throw (InvalidSizeException) t;
+				}
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Calcola in sequenza il vicino più prossimo delle righe {@code lo..hi-1}.
+	 *
+	 * @param k Numero di cluster.
+	 * @param lo Prima riga.
+	 * @param hi Prima riga esclusa.
+	 * @param distance Distanza tra i cluster di due posizioni.
+	 * @param nearest Posizione del vicino di ciascuna riga.
+	 * @param nearestDistance Distanza dal vicino di ciascuna riga.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	private static void scan(int k, int lo, int hi, PairDistance distance, int[] nearest, double[] nearestDistance) throws InvalidSizeException {
+		for (int p = lo; p < Math.min(hi, k - 1); p++) {
+			double minD = Double.MAX_VALUE;
+			int best = p + 1;
+			for (int q = p + 1; q < k; q++) {
+				double d = distance.distance(p, q);
+				if (d < minD) {
+					minD = d;
+					best = q;
+				}
+			}
+			nearest[p] = best;
+			nearestDistance[p] = minD;
+		}
+	}
+
+	/**
+	 * Restituisce il numero di coppie delle righe {@code lo..hi-1}.
+	 *
+	 * @param k Numero di cluster.
+	 * @param lo Prima riga.
+	 * @param hi Prima riga esclusa.
+	 * @return Numero di coppie {@code (p, q)} con {@code lo <= p < hi} e {@code p < q < k}.
+	 */
+	private static long pairs(int k, int lo, int hi) {
+		long rows = hi - lo;
+		// La riga p contiene k-1-p coppie
+		return rows * (k - 1) - rows * (lo + hi - 1) / 2;
+	}
+
+	/**
+	 * Blocco di righe consecutive, diviso in due metà con lo stesso numero di coppie finché è abbastanza grande.
+	 */
+	private static class Block extends RecursiveAction {
+		/** Versione della forma serializzata, richiesta da {@link RecursiveAction}; i blocchi non vengono mai serializzati. */
+		private static final long serialVersionUID = 1L;
+		private final int k;
+		private final int lo;
+		private final int hi;
+		private final PairDistance distance;
+		private final int[] nearest;
+		private final double[] nearestDistance;
+
+		Block(int k, int lo, int hi, PairDistance distance, int[] nearest, double[] nearestDistance) {
+			this.k = k;
+			this.lo = lo;
+			this.hi = hi;
+			this.distance = distance;
+			this.nearest = nearest;
+			this.nearestDistance = nearestDistance;
+		}
+
+		@Override
+		protected void compute() {
+			long total = pairs(k, lo, hi);
+			if (hi - lo <= 1 || total <= BLOCK_PAIRS) {
+				try {
+					scan(k, lo, hi, distance, nearest, nearestDistance);
+				} catch (InvalidSizeException e) {
+					throw new IllegalStateException(e);
+				}
+				return;
+			}
+
+			// Le righe iniziali sono più lunghe: il punto di divisione si cerca sul numero di coppie
+			int a = lo + 1;
+			int b = hi - 1;
+			while (a < b) {
+				int mid = (a + b) >>> 1;
+				if (pairs(k, lo, mid) * 2 < total) {
+					a = mid + 1;
+				} else {
+					b = mid;
+				}
+			}
+			invokeAll(new Block(k, lo, a, distance, nearest, nearestDistance),
+					new Block(k, a, hi, distance, nearest, nearestDistance));
+		}
+	}
+}
@@ -2,17 +2,27 @@ package clustering;
 
 import data.Data;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
 
 
 /**
  * La classe Cluster rappresenta un gruppo di dati all'interno di un clustering.
  * Ogni cluster è composto da un insieme di indici che corrispondono alle posizioni
  * degli esempi all'interno del dataset {@link Data}.
- * La classe utilizza un {@link TreeSet} per mantenere gli indici ordinati.
+ * Gli indici sono mantenuti ordinati e senza ripetizioni in un array di {@code int}, che consente
+ * la fusione di due cluster in tempo lineare e l'accesso agli indici senza oggetti {@link Integer}.
+ * Il cluster può inoltre mantenere la somma dei valori dei suoi esempi e la loro dispersione attorno al centroide,
+ * oltre al centro usato dalla distanza mediana, calcolati al primo utilizzo e aggiornati in O(d) a ogni fusione:
+ * da questi si ricavano il centroide e distanze come la media delle distanze tra coppie di esempi
+ * senza esaminare i singoli esempi.
  *
  * Implementa {@link Iterable} per consentire l'iterazione sugli indici,
  * {@link Cloneable} per supportare la clonazione dell'oggetto e
@@ -21,19 +31,101 @@ import java.util.TreeSet;
  * @author Elisa Vittoria Cosmai
  */
 public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
+	/** Versione della forma serializzata dei cluster, fissata al valore calcolato per i modelli già salvati. */
+	private static final long serialVersionUID = 4562681018408731177L;
 	/**
-	 * Set di interi che rappresenta gli indici degli esempi appartenenti al cluster.
-	 * L'uso di un {@link TreeSet} garantisce l'ordine naturale degli elementi.
+	 * Array che contiene, nelle prime {@code size} posizioni, gli indici degli esempi appartenenti al cluster
+	 * in ordine crescente.
 	 */
-	private Set<Integer> clusteredData =new TreeSet<>();
+	private int[] clusteredData = new int[1];
+	/** Numero di indici contenuti nel cluster. */
+	private int size = 0;
+	/**
+	 * Statistiche degli esempi del cluster, oppure {@code null} se non ancora calcolate;
+	 * non vengono serializzate perché si ricavano dal dataset.
+	 */
+	private transient Statistics statistics;
+
+	/**
+	 * Somma dei valori, dispersione e centro mediano degli esempi di un cluster.
+	 * È immutabile, così che possa essere letta da più thread senza sincronizzazione.
+	 */
+	private static final class Statistics {
+		/** Somma dei valori degli esempi per ciascun attributo. */
+		private final double[] sum;
+		/**
+		 * Somma delle distanze euclidee al quadrato degli esempi dal centroide. È calcolata attorno al centroide,
+		 * invece che come differenza tra la somma delle norme e la norma della somma, perché quella differenza
+		 * perde tutte le cifre significative quando gli esempi sono lontani dall'origine rispetto alla loro distanza reciproca.
+		 */
+		private final double scatter;
+		/** Punto medio dei centri mediani dei due cluster fusi, oppure il centroide per un cluster non ottenuto da una fusione. */
+		private final double[] median;
+
+		Statistics(double[] sum, double scatter, double[] median) {
+			this.sum = sum;
+			this.scatter = scatter;
+			this.median = median;
+		}
+
+		/**
+		 * Restituisce le statistiche dell'unione di due cluster disgiunti. La dispersione dell'unione è la somma
+		 * delle due dispersioni più quella dei centroidi attorno al nuovo centroide, pesata per le dimensioni.
+		 *
+		 * @param size numero di esempi di questo cluster
+		 * @param other statistiche dell'altro cluster
+		 * @param otherSize numero di esempi dell'altro cluster
+		 * @return statistiche del cluster fuso
+		 */
+		Statistics merge(int size, Statistics other, int otherSize) {
+			double[] merged = new double[sum.length];
+			double[] mergedMedian = new double[sum.length];
+			double between = 0.0;
+			for (int j = 0; j < merged.length; j++) {
+				merged[j] = sum[j] + other.sum[j];
+				mergedMedian[j] = (median[j] + other.median[j]) / 2;
+				double diff = sum[j] / size - other.sum[j] / otherSize;
+				between += diff * diff;
+			}
+			double weight = (double) size * otherSize / (size + otherSize);
+			return new Statistics(merged, scatter + other.scatter + weight * between, mergedMedian);
+		}
+	}
+
+	/**
+	 * Costruisce un cluster vuoto.
+	 */
+	public Cluster() {
+	}
+
+	/**
+	 * Costruisce un cluster a partire da indici già ordinati e distinti, senza copiarli.
+	 *
+	 * @param members indici degli esempi in ordine crescente
+	 */
+	Cluster(int[] members) {
+		this.clusteredData = members;
+		this.size = members.length;
+	}
 
 	/**
-	 * Aggiunge un indice al cluster.
+	 * Aggiunge un indice al cluster, se non è già presente.
 	 *
 	 * @param id indice dell'esempio da aggiungere al cluster
 	 */
 	void addData(int id){
-		clusteredData.add(id);
+		int p = Arrays.binarySearch(clusteredData, 0, size, id);
+		if (p >= 0) {
+			return;
+		}
+		p = -p - 1;
+		if (size == clusteredData.length) {
+			clusteredData = Arrays.copyOf(clusteredData, Math.max(1, size * 2));
+		}
+		System.arraycopy(clusteredData, p, clusteredData, p + 1, size - p);
+		clusteredData[p] = id;
+		size++;
+		statistics = null;
 	}
 
 	/**
@@ -42,7 +134,113 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 * @return dimensione del cluster
 	 */
 	public int getSize() {
-		return clusteredData.size();
+		return size;
+	}
+
+	/**
+	 * Restituisce l'indice dell'esempio in una posizione del cluster, senza conversione in {@link Integer}.
+	 * Gli indici sono in ordine crescente, per cui {@code get(0)} è l'indice minimo.
+	 *
+	 * @param i posizione, compresa tra 0 e {@code getSize() - 1}
+	 * @return indice dell'esempio nel dataset
+	 */
+	public int get(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Posizione " + i + " fuori dal cluster di dimensione " + size);
+		}
+		return clusteredData[i];
+	}
+
+	/**
+	 * Restituisce la dispersione del cluster: la somma delle distanze euclidee al quadrato dei suoi esempi
+	 * dal centroide. Alla prima invocazione le statistiche del cluster vengono calcolate dal dataset in O(size*d).
+	 *
+	 * @param data il dataset a cui appartengono gli esempi del cluster
+	 * @return dispersione degli esempi attorno al centroide, mai negativa
+	 */
+	public double getScatter(Data data) {
+		return statistics(data).scatter;
+	}
+
+	/**
+	 * Restituisce il valore di un attributo del centroide del cluster, cioè la media dei valori dei suoi esempi.
+	 *
+	 * @param data il dataset a cui appartengono gli esempi del cluster
+	 * @param attribute indice dell'attributo
+	 * @return valore dell'attributo nel centroide
+	 */
+	public double getCentroid(Data data, int attribute) {
+		return statistics(data).sum[attribute] / size;
+	}
+
+	/**
+	 * Restituisce il valore di un attributo del centro mediano del cluster: il punto medio dei centri mediani
+	 * dei due cluster da cui è stato ottenuto per fusione, indipendentemente dalle loro dimensioni.
+	 * Per un cluster non ottenuto da una fusione, o per cui le statistiche non erano disponibili al momento
+	 * della fusione, coincide con il centroide.
+	 *
+	 * @param data il dataset a cui appartengono gli esempi del cluster
+	 * @param attribute indice dell'attributo
+	 * @return valore dell'attributo nel centro mediano
+	 */
+	public double getMedian(Data data, int attribute) {
+		return statistics(data).median[attribute];
+	}
+
+	/**
+	 * Restituisce le statistiche del cluster, calcolandole se necessario.
+	 * Più thread possono calcolarle contemporaneamente: ottengono lo stesso risultato.
+	 * La dispersione richiede un secondo passaggio sugli esempi, dopo il calcolo del centroide.
+	 *
+	 * @param data il dataset a cui appartengono gli esempi del cluster
+	 * @return statistiche del cluster
+	 */
+	private Statistics statistics(Data data) {
+		Statistics s = statistics;
+		if (s == null) {
+			int d = data.getNumberOfAttributes();
+			double[] sum = new double[d];
+			boolean single = data.isSinglePrecision();
+			// In singola precisione le somme sono compensate (Kahan), come le distanze del dataset
+			double[] compensation = single ? new double[d + 1] : null;
+			for (int i = 0; i < size; i++) {
+				int index = clusteredData[i];
+				for (int j = 0; j < d; j++) {
+					if (single) {
+						double y = data.getValue(index, j) - compensation[j];
+						double t = sum[j] + y;
+						compensation[j] = (t - sum[j]) - y;
+						sum[j] = t;
+					} else {
+						sum[j] += data.getValue(index, j);
+					}
+				}
+			}
+			double[] median = new double[d];
+			for (int j = 0; j < d; j++) {
+				median[j] = sum[j] / size;
+			}
+			double scatter = 0.0;
+			for (int i = 0; i < size; i++) {
+				int index = clusteredData[i];
+				double squared = 0.0;
+				for (int j = 0; j < d; j++) {
+					double diff = data.getValue(index, j) - median[j];
+					squared += diff * diff;
+				}
+				if (single) {
+					double y = squared - compensation[d];
+					double t = scatter + y;
+					compensation[d] = (t - scatter) - y;
+					scatter = t;
+				} else {
+					scatter += squared;
+				}
+			}
+			s = new Statistics(sum, scatter, median);
+			statistics = s;
+		}
+		return s;
 	}
 
 	/**
@@ -51,7 +249,22 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 * @return iteratore sugli indici del cluster
 	 */
 	public Iterator<Integer> iterator() {
-		return clusteredData.iterator();
+		return new Iterator<Integer>() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public Integer next() {
+				if (i >= size) {
+					throw new NoSuchElementException();
+				}
+				return clusteredData[i++];
+			}
+		};
 	}
 
 	/**
@@ -66,8 +279,7 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 		Cluster clone;
 		try {
 			clone = (Cluster) super.clone();
-			//noinspection unchecked
-			clone.clusteredData = (Set<Integer>) ((TreeSet<Integer>) this.clusteredData).clone();
+			clone.clusteredData = this.clusteredData.clone();
 		} catch (CloneNotSupportedException e) {
 			throw new CloneNotSupportedException("Errore nella clonazione");
 		}
@@ -77,22 +289,46 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 
 	/**
 	 * Unisce il cluster corrente con un altro cluster e restituisce un nuovo cluster risultante dalla fusione.
+	 * Gli indici dei due cluster, già ordinati, vengono fusi in tempo lineare; se entrambi i cluster
+	 * hanno già calcolato le proprie statistiche e sono disgiunti, quelle del nuovo cluster si ottengono in O(d).
 	 *
 	 * @param c il cluster da unire
 	 * @return nuovo cluster contenente gli elementi di entrambi i cluster
 	 */
 	Cluster mergeCluster(Cluster c) {
 		Cluster newC = new Cluster();
-		Iterator<Integer> it1 = this.iterator();
-		Iterator<Integer> it2 = c.iterator();
+		int[] merged = new int[Math.max(1, this.size + c.size)];
+		int i = 0;
+		int j = 0;
+		int k = 0;
 
-		while (it1.hasNext()) {
-			newC.addData(it1.next());
+		while (i < this.size && j < c.size) {
+			int a = this.clusteredData[i];
+			int b = c.clusteredData[j];
+			if (a < b) {
+				merged[k++] = a;
+				i++;
+			} else if (b < a) {
+				merged[k++] = b;
+				j++;
+			} else { // indice presente in entrambi i cluster
+				merged[k++] = a;
+				i++;
+				j++;
+			}
+		}
+		while (i < this.size) {
+			merged[k++] = this.clusteredData[i++];
 		}
-		while (it2.hasNext()) {
-			newC.addData(it2.next());
+		while (j < c.size) {
+			merged[k++] = c.clusteredData[j++];
 		}
 
+		newC.clusteredData = merged;
+		newC.size = k;
+		if (k == this.size + c.size && this.statistics != null && c.statistics != null) {
+			newC.statistics = this.statistics.merge(this.size, c.statistics, c.size);
+		}
 		return newC;
 	}
 
@@ -123,11 +359,71 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 */
 	public String toString(Data data) {
 		StringBuilder str = new StringBuilder();
+		try {
+			write(str, data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // StringBuilder non genera IOException
+		}
+		return str.toString();
+	}
 
-		for (Integer clusteredDatum : clusteredData)
-			str.append("<[").append(data.getExample(clusteredDatum)).append("]>");
+	/**
+	 * Scrive i dati degli esempi del cluster, nello stesso formato di {@link #toString(Data)},
+	 * un valore alla volta e senza costruire la rappresentazione testuale degli esempi.
+	 * I valori di un dataset in singola precisione sono scritti come {@code float}, con le sole cifre
+	 * necessarie a identificarli, invece che con quelle del {@code double} in cui vengono restituiti.
+	 *
+	 * @param out destinazione della rappresentazione testuale
+	 * @param data il dataset di riferimento
+	 * @throws IOException se si verifica un errore durante la scrittura
+	 */
+	void write(Appendable out, Data data) throws IOException {
+		int d = data.getNumberOfAttributes();
+		boolean single = data.isSinglePrecision();
+		for (int i = 0; i < size; i++) {
+			out.append("<[");
+			for (int j = 0; j < d; j++) {
+				if (j > 0)
+					out.append(",");
+				double value = data.getValue(clusteredData[i], j);
+				out.append(single ? Float.toString((float) value) : Double.toString(value));
+			}
+			out.append("]>");
+		}
+	}
 
-		return str.toString();
+	/**
+	 * Legge un cluster serializzato. Nei modelli salvati prima che gli indici fossero memorizzati
+	 * in un array di {@code int} il campo {@code clusteredData} è un insieme di {@link Integer},
+	 * che viene convertito nell'array ordinato.
+	 *
+	 * @param in stream da cui leggere il cluster
+	 * @throws IOException se si verifica un errore di lettura o il cluster non è valido
+	 * @throws ClassNotFoundException se la classe di un oggetto letto non è disponibile
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		Object members = fields.get("clusteredData", null);
+		if (members instanceof int[]) {
+			clusteredData = (int[]) members;
+			size = fields.get("size", 0);
+			if (size < 0 || size > clusteredData.length) {
+				throw new InvalidObjectException("Dimensione del cluster non valida: " + size);
+			}
+		} else if (members instanceof Collection) {
+			Collection<?> ids = (Collection<?>) members;
+			clusteredData = new int[Math.max(1, ids.size())];
+			size = 0;
+			for (Object id : ids) {
+				if (!(id instanceof Integer)) {
+					throw new InvalidObjectException("Indice del cluster non valido: " + id);
+				}
+				clusteredData[size++] = (Integer) id;
+			}
+			Arrays.sort(clusteredData, 0, size);
+		} else {
+			throw new InvalidObjectException("Indici del cluster mancanti");
+		}
 	}
 
 
@@ -1,14 +1,14 @@
 package clustering;
 
 import data.Data;
-import data.InvalidSizeException;
-import distance.ClusterDistance;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 
 /**
  * La classe ClusterSet rappresenta un insieme di cluster in un dataset.
- * Permette la gestione dei cluster e la loro fusione in base a una metrica di distanza.
+ * Permette la gestione dei cluster e la fusione di due di essi, scelti da un {@link MiningEngine}.
  * Ogni cluster è un'istanza della classe {@link Cluster}.
  *
  * Implementa {@link Serializable} per consentire la serializzazione dell'insieme.
@@ -16,6 +16,8 @@ import java.io.Serializable;
  * @author Elisa Vittoria Cosmai
  */
 class ClusterSet implements Serializable {
+	/** Versione della forma serializzata dei ClusterSet, fissata al valore dei modelli salvati: aggiungere metodi non la cambia. */
+	private static final long serialVersionUID = -2951336249391790109L;
 	/** Array che contiene i cluster */
 	private final Cluster[] C;
 	/** Indice dell'ultimo cluster aggiunto */
@@ -30,6 +32,16 @@ class ClusterSet implements Serializable {
 		C = new Cluster[k];
 	}
 
+	/**
+	 * Costruisce un insieme contenente i cluster indicati, nell'ordine dato e senza copiarli.
+	 *
+	 * @param clusters Cluster distinti che compongono l'insieme.
+	 */
+	ClusterSet(Cluster[] clusters) {
+		C = clusters;
+		lastClusterIndex = clusters.length;
+	}
+
 	/**
 	 * Aggiunge un nuovo cluster all'insieme, evitando duplicati.
 	 *
@@ -56,55 +68,35 @@ class ClusterSet implements Serializable {
 	}
 
 	/**
-	 * Esegue la fusione dei due cluster più vicini secondo una metrica di distanza.
+	 * Restituisce il numero di cluster contenuti nell'insieme.
 	 *
-	 * @param distance Metrica per il calcolo della distanza tra i cluster.
-	 * @param data Dataset su cui è eseguito il clustering.
-	 * @return Un nuovo ClusterSet con i due cluster più vicini fusi.
-	 * @throws InvalidSizeException Se i cluster hanno dimensioni incompatibili.
-	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 * @return Numero di cluster aggiunti all'insieme.
 	 */
-	ClusterSet mergeClosestClusters(ClusterDistance distance, Data data) throws InvalidSizeException, InvalidClustersNumberException {
-		if (lastClusterIndex <= 1) {
-			throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
-		}
-
-		double minD = Double.MAX_VALUE;
-		Cluster cluster1 = null;
-		Cluster cluster2 = null;
-
-		// Trova i due cluster più vicini
-		for (int i = 0; i < this.C.length; i++) {
-			Cluster c1 = get(i);
-			for (int j = i + 1; j < this.C.length; j++) {
-				Cluster c2 = get(j);
-				double d;
-				try {
-					d = distance.distance(c1, c2, data);
-					if (d < minD) {
-						minD = d;
-						cluster1 = c1;
-						cluster2 = c2;
-					}
-				} catch (InvalidSizeException e) {
-					throw e; // Interrompe l'elaborazione se la dimensione è invalida
-				}
-			}
-		}
+	int getSize() {
+		return lastClusterIndex;
+	}
 
-		// Fonde i due cluster più vicini
-        assert cluster1 != null;
-        Cluster mergedCluster = cluster1.mergeCluster(cluster2);
+	/**
+	 * Restituisce un nuovo ClusterSet in cui i due cluster indicati sono sostituiti dalla loro fusione.
+	 * I cluster non coinvolti mantengono il loro ordine e il cluster fuso viene aggiunto in coda.
+	 *
+	 * @param cluster1 Primo cluster da fondere, che precede {@code cluster2} nell'insieme.
+	 * @param cluster2 Secondo cluster da fondere.
+	 * @return Un nuovo ClusterSet con i due cluster fusi.
+	 */
+	ClusterSet mergeClusters(Cluster cluster1, Cluster cluster2) {
+		Cluster mergedCluster = cluster1.mergeCluster(cluster2);
 		ClusterSet finalClusterSet = new ClusterSet(this.C.length - 1);
 
-		// Ricostruisce il nuovo insieme di cluster
+		// Ricostruisce il nuovo insieme di cluster: i cluster sono già distinti,
+		// quindi non serve il controllo dei duplicati di add()
 		for (int i = 0; i < this.C.length; i++) {
 			Cluster c = get(i);
 			if (c != cluster1 && c != cluster2) {
-				finalClusterSet.add(c);
+				finalClusterSet.C[finalClusterSet.lastClusterIndex++] = c;
 			}
 		}
-		finalClusterSet.add(mergedCluster);
+		finalClusterSet.C[finalClusterSet.lastClusterIndex++] = mergedCluster;
 
 		return finalClusterSet;
 	}
@@ -133,11 +125,29 @@ class ClusterSet implements Serializable {
 	 */
 	public String toString(Data data) {
 		StringBuilder str = new StringBuilder();
+		try {
+			write(str, data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // StringBuilder non genera IOException
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Scrive i cluster con i dati degli esempi associati, nello stesso formato di {@link #toString(Data)},
+	 * un cluster alla volta.
+	 *
+	 * @param out Destinazione della rappresentazione testuale.
+	 * @param data Dataset utilizzato per il clustering.
+	 * @throws IOException Se si verifica un errore durante la scrittura.
+	 */
+	void write(Appendable out, Data data) throws IOException {
 		for (int i = 0; i < C.length; i++) {
 			if (C[i] != null) {
-				str.append("cluster").append(i).append(":").append(C[i].toString(data)).append("\n");
+				out.append("cluster").append(Integer.toString(i)).append(":");
+				C[i].write(out, data);
+				out.append("\n");
 			}
 		}
-		return str.toString();
 	}
 }
@@ -2,22 +2,59 @@ package clustering;
 
 import data.Data;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * La classe Dendrogram rappresenta un dendrogramma utilizzato per modellare gerarchie di cluster
  * in un'analisi di clustering gerarchico.
  * Il dendrogramma è costituito da diversi livelli, ciascuno contenente un insieme di cluster ({@link ClusterSet}).
  *
+ * Il livello 0 contiene un cluster per ciascun esempio e ogni livello successivo si ottiene dal precedente
+ * con una fusione: per questo il dendrogramma memorizza soltanto la sequenza delle fusioni ({@link LinkageMatrix}),
+ * che occupa O(n) memoria, e ricostruisce su richiesta il ClusterSet di un livello tramite union-find.
+ * Gli ultimi livelli ricostruiti sono mantenuti in una piccola cache LRU, così che le richieste ripetute
+ * degli stessi livelli non li ricostruiscano ogni volta.
+ *
  * Implementa {@link Serializable} per supportare la serializzazione dell'oggetto.
  *
  * @author Elisa Vittoria Cosmai
  */
 class Dendrogram implements Serializable {
+    /** Versione della forma serializzata del dendrogramma, uguale a quella dei modelli già salvati. */
+    private static final long serialVersionUID = 2633771947011792452L;
+    /**
+     * Numero massimo di livelli ricostruiti mantenuti in memoria.
+     */
+    private static final int CACHED_LEVELS = 8;
+    /**
+     * Numero di livelli del dendrogramma; non è {@code final} perché viene ricavato anche dai modelli
+     * salvati nel formato precedente, in {@link #readObject(ObjectInputStream)}.
+     */
+    private int depth;
+    /**
+     * Numero di esempi del dataset, ovvero di cluster del livello 0, oppure -1 se il livello 0 non è stato impostato.
+     */
+    private int numberOfExamples = -1;
+    /**
+     * Sequenza di fusioni, con le relative distanze, da cui si ricavano i livelli successivi al livello 0,
+     * oppure {@code null} se non è ancora stata impostata.
+     */
+    private LinkageMatrix merges;
     /**
-     * Array che rappresenta i livelli del dendrogramma, ciascuno contenente un {@link ClusterSet}.
+     * Albero di copertura da cui si ricava la sequenza di fusioni per qualsiasi profondità,
+     * oppure {@code null} se la distanza utilizzata non lo prevede.
      */
-    private final ClusterSet[] tree;
+    private SpanningTree spanningTree;
+    /**
+     * Livelli ricostruiti di recente, in ordine di utilizzo; non viene serializzata e viene creata al primo utilizzo.
+     */
+    private transient Map<Integer, ClusterSet> cache;
 
     /**
      * Costruisce un dendrogramma con una profondità specificata.
@@ -29,27 +66,169 @@ class Dendrogram implements Serializable {
         if (depth <= 0) {
             throw new InvalidDepthException("Profondità non valida!\n");
         }
-        tree = new ClusterSet[depth];
+        this.depth = depth;
+    }
+
+    /**
+     * Imposta il livello 0 del dendrogramma, con un cluster per ciascun esempio del dataset.
+     *
+     * @param n Numero di esempi del dataset.
+     */
+    void setNumberOfExamples(int n) {
+        this.numberOfExamples = n;
+        clearCache();
     }
 
     /**
-     * Imposta un {@link ClusterSet} in un livello specifico del dendrogramma.
+     * Imposta la sequenza di fusioni da cui si ricavano i livelli successivi al livello 0:
+     * il livello {@code s + 1} si ottiene fondendo nel livello {@code s} i due cluster della fusione {@code s}.
      *
-     * @param c Il ClusterSet da assegnare.
-     * @param level Il livello del dendrogramma in cui inserire il ClusterSet.
+     * @param merges Sequenza di fusioni, di lunghezza almeno pari alla profondità meno uno.
      */
-    void setClusterSet(ClusterSet c, int level) {
-        tree[level] = c;
+    void setMerges(LinkageMatrix merges) {
+        this.merges = merges;
+        this.numberOfExamples = merges.getNumberOfExamples();
+        clearCache();
+    }
+
+    /**
+     * Imposta l'albero di copertura da cui è stata ricavata la sequenza di fusioni, salvato insieme al dendrogramma.
+     *
+     * @param spanningTree Albero di copertura degli esempi.
+     */
+    void setSpanningTree(SpanningTree spanningTree) {
+        this.spanningTree = spanningTree;
+    }
+
+    /**
+     * Restituisce l'albero di copertura da cui è stata ricavata la sequenza di fusioni.
+     *
+     * @return L'albero di copertura, oppure {@code null} se non disponibile.
+     */
+    SpanningTree getSpanningTree() {
+        return spanningTree;
+    }
+
+    /**
+     * Svuota la cache dei livelli ricostruiti, che non sono più validi.
+     */
+    private synchronized void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Restituisce la sequenza di fusioni da cui sono stati costruiti i livelli del dendrogramma.
+     *
+     * @return La sequenza di fusioni con le relative distanze, oppure {@code null} se non disponibile.
+     */
+    LinkageMatrix getMerges() {
+        return merges;
     }
 
     /**
      * Restituisce il {@link ClusterSet} associato a un livello specifico del dendrogramma.
+     * Il livello viene letto dalla cache dei livelli ricostruiti di recente oppure ricostruito e aggiunto alla cache,
+     * da cui viene rimosso il livello utilizzato meno di recente.
+     *
+     * @param level Il livello da cui recuperare il ClusterSet.
+     * @return Il ClusterSet al livello specificato, oppure {@code null} se il livello non è disponibile.
+     */
+    synchronized ClusterSet getClusterSet(int level) {
+        if (cache == null) {
+            cache = new LinkedHashMap<Integer, ClusterSet>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, ClusterSet> eldest) {
+                    return size() > CACHED_LEVELS;
+                }
+            };
+        }
+        ClusterSet set = cache.get(level);
+        if (set == null) {
+            set = buildClusterSet(level);
+            if (set != null) {
+                cache.put(level, set);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Ricostruisce il {@link ClusterSet} di un livello del dendrogramma a partire dalle prime {@code level} fusioni.
+     *
+     * I cluster del livello compaiono nell'ordine dei loro identificativi: prima gli esempi non ancora
+     * fusi, poi i cluster creati dalle fusioni nell'ordine in cui sono stati creati, come nei ClusterSet
+     * prodotti da {@link ClusterSet#mergeClusters(Cluster, Cluster)}.
      *
      * @param level Il livello da cui recuperare il ClusterSet.
-     * @return Il ClusterSet al livello specificato, oppure {@code null} se non è stato assegnato alcun ClusterSet.
+     * @return Il ClusterSet al livello specificato, oppure {@code null} se il livello non è disponibile.
+     */
+    private ClusterSet buildClusterSet(int level) {
+        int n = numberOfExamples;
+        if (n < 0 || level < 0 || level >= depth || (level > 0 && (merges == null || level > merges.getLength()))) {
+            return null;
+        }
+
+        // Union-find sugli esempi: ogni radice conosce l'identificativo del proprio cluster
+        int[] parent = new int[n];
+        int[] clusterOf = new int[n];
+        int[] rootOf = new int[n + level];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            clusterOf[i] = i;
+            rootOf[i] = i;
+        }
+        for (int s = 0; s < level; s++) {
+            int r1 = rootOf[merges.getFirst(s)];
+            int r2 = rootOf[merges.getSecond(s)];
+            parent[r2] = r1;
+            clusterOf[r1] = n + s;
+            rootOf[n + s] = r1;
+        }
+
+        // Conta i membri di ciascun cluster e assegna le posizioni nell'ordine degli identificativi
+        int[] count = new int[n + level];
+        int[] clusterOfExample = new int[n];
+        for (int i = 0; i < n; i++) {
+            clusterOfExample[i] = clusterOf[find(parent, i)];
+            count[clusterOfExample[i]]++;
+        }
+        int[][] members = new int[n + level][];
+        Cluster[] clusters = new Cluster[n - level];
+        int k = 0;
+        for (int id = 0; id < n + level; id++) {
+            if (count[id] > 0) {
+                members[id] = new int[count[id]];
+                count[id] = 0;
+            }
+        }
+        // Gli esempi sono visitati in ordine crescente, per cui i membri risultano già ordinati
+        for (int i = 0; i < n; i++) {
+            int id = clusterOfExample[i];
+            members[id][count[id]++] = i;
+        }
+        for (int id = 0; id < n + level; id++) {
+            if (members[id] != null) {
+                clusters[k++] = new Cluster(members[id]);
+            }
+        }
+        return new ClusterSet(clusters);
+    }
+
+    /**
+     * Restituisce la radice della struttura union-find che contiene l'esempio indicato.
+     *
+     * @param parent Padre di ciascun esempio.
+     * @param i Indice dell'esempio.
+     * @return Radice del cluster dell'esempio.
      */
-    ClusterSet getClusterSet(int level) {
-        return tree[level];
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
     }
 
     /**
@@ -58,21 +237,23 @@ class Dendrogram implements Serializable {
      * @return Il numero totale di livelli nel dendrogramma.
      */
     int getDepth() {
-        return tree.length;
+        return depth;
     }
 
     /**
      * Restituisce una rappresentazione testuale del dendrogramma, includendo i livelli e i relativi ClusterSet.
+     * I livelli vengono ricostruiti uno alla volta, senza occupare la cache.
      *
      * @return Una stringa che rappresenta la struttura del dendrogramma.
      */
     @Override
     public String toString() {
         StringBuilder v = new StringBuilder();
-        for (int i = 0; i < tree.length; i++) {
+        for (int i = 0; i < depth; i++) {
             v.append("level").append(i).append(":\n");
-            if (tree[i] != null) {
-                v.append(tree[i]);
+            ClusterSet level = buildClusterSet(i);
+            if (level != null) {
+                v.append(level);
             } else {
                 v.append("null");
             }
@@ -83,21 +264,193 @@ class Dendrogram implements Serializable {
 
     /**
      * Restituisce una rappresentazione testuale del dendrogramma, includendo i dati associati ai cluster in ogni livello.
+     * I livelli vengono ricostruiti uno alla volta, senza occupare la cache.
      *
      * @param data Il dataset utilizzato per il clustering.
      * @return Una stringa che rappresenta il dendrogramma con i dati degli esempi raggruppati.
      */
     public String toString(Data data) {
         StringBuilder v = new StringBuilder();
-        for (int i = 0; i < tree.length; i++) {
-            v.append("level").append(i).append(":\n");
-            if (tree[i] != null) {
-                v.append(tree[i].toString(data));
-            } else {
-                v.append("null");
-            }
-            v.append("\n");
+        try {
+            write(v, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder non genera IOException
+        }
+        return v.toString();
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale dei soli livelli compresi in un intervallo, nello stesso
+     * formato di {@link #toString(Data)}. Vengono ricostruiti soltanto i livelli richiesti.
+     *
+     * @param data Il dataset utilizzato per il clustering.
+     * @param fromLevel Primo livello da rappresentare.
+     * @param toLevel Ultimo livello da rappresentare, incluso.
+     * @return Una stringa che rappresenta i livelli richiesti con i dati degli esempi raggruppati.
+     */
+    String toString(Data data, int fromLevel, int toLevel) {
+        StringBuilder v = new StringBuilder();
+        try {
+            write(v, data, fromLevel, toLevel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder non genera IOException
         }
         return v.toString();
     }
+
+    /**
+     * Scrive il dendrogramma nello stesso formato di {@link #toString(Data)}, livello per livello e cluster per cluster.
+     * In memoria si trova un solo livello ricostruito alla volta, senza occupare la cache,
+     * e nessuna rappresentazione testuale dell'intero dendrogramma.
+     *
+     * @param out Destinazione della rappresentazione testuale.
+     * @param data Il dataset utilizzato per il clustering.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    void write(Appendable out, Data data) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            writeLevel(out, i, buildClusterSet(i), data);
+        }
+    }
+
+    /**
+     * Scrive i soli livelli compresi in un intervallo, nello stesso formato di {@link #toString(Data)}.
+     * I livelli sono letti dalla cache oppure ricostruiti e aggiunti alla cache.
+     *
+     * @param out Destinazione della rappresentazione testuale.
+     * @param data Il dataset utilizzato per il clustering.
+     * @param fromLevel Primo livello da rappresentare.
+     * @param toLevel Ultimo livello da rappresentare, incluso.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    void write(Appendable out, Data data, int fromLevel, int toLevel) throws IOException {
+        for (int i = fromLevel; i <= toLevel; i++) {
+            writeLevel(out, i, getClusterSet(i), data);
+        }
+    }
+
+    /**
+     * Scrive la rappresentazione testuale di un livello.
+     *
+     * @param out Destinazione della rappresentazione testuale.
+     * @param i Numero del livello.
+     * @param level ClusterSet del livello, oppure {@code null} se non disponibile.
+     * @param data Il dataset utilizzato per il clustering.
+     * @throws IOException Se si verifica un errore durante la scrittura.
+     */
+    private static void writeLevel(Appendable out, int i, ClusterSet level, Data data) throws IOException {
+        out.append("level").append(Integer.toString(i)).append(":\n");
+        if (level != null) {
+            level.write(out, data);
+        } else {
+            out.append("null");
+        }
+        out.append("\n");
+    }
+
+    /**
+     * Legge un dendrogramma serializzato. I modelli salvati prima dell'introduzione della sequenza di fusioni
+     * contengono invece tutti i livelli ({@code ClusterSet[] tree}): in questo caso la sequenza viene ricavata
+     * confrontando ogni livello con il successivo. Le distanze delle fusioni non sono salvate in quel formato
+     * e valgono {@link Double#NaN}.
+     *
+     * @param in Stream da cui leggere il dendrogramma.
+     * @throws IOException Se si verifica un errore di lettura o il dendrogramma non è valido.
+     * @throws ClassNotFoundException Se la classe di un oggetto letto non è disponibile.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        if (fields.getObjectStreamClass().getField("tree") != null) {
+            readLevels((ClusterSet[]) fields.get("tree", null));
+        } else {
+            depth = fields.get("depth", 0);
+            numberOfExamples = fields.get("numberOfExamples", -1);
+            merges = (LinkageMatrix) fields.get("merges", null);
+            spanningTree = (SpanningTree) fields.get("spanningTree", null);
+        }
+        if (depth <= 0) {
+            throw new InvalidObjectException("Profondità del dendrogramma non valida: " + depth);
+        }
+    }
+
+    /**
+     * Ricava la sequenza di fusioni dai livelli di un dendrogramma salvato nel formato precedente.
+     * Ogni livello si ottiene dal precedente lasciando nell'ordine i cluster non fusi e accodando
+     * il cluster fuso, per cui i due cluster fusi sono quelli del livello che non compaiono nel successivo.
+     *
+     * @param tree Livelli del dendrogramma, eventualmente seguiti da livelli non calcolati ({@code null}).
+     * @throws InvalidObjectException Se i livelli non sono ottenuti l'uno dall'altro con una fusione.
+     */
+    private void readLevels(ClusterSet[] tree) throws InvalidObjectException {
+        if (tree == null || tree.length == 0 || tree[0] == null) {
+            throw new InvalidObjectException("Dendrogramma senza livelli");
+        }
+        depth = tree.length;
+        ClusterSet level = tree[0];
+        int n = level.getSize();
+        int[] ids = new int[n];
+        for (int p = 0; p < n; p++) {
+            if (level.get(p).getSize() != 1) {
+                throw new InvalidObjectException("Il livello 0 deve contenere un esempio per cluster");
+            }
+            ids[p] = level.get(p).get(0);
+        }
+
+        int levels = 1;
+        while (levels < depth && tree[levels] != null) {
+            levels++;
+        }
+        LinkageMatrix linkage = new LinkageMatrix(n, levels - 1);
+        for (int s = 0; s + 1 < levels; s++) {
+            ClusterSet next = tree[s + 1];
+            int k = level.getSize();
+            if (next.getSize() != k - 1) {
+                throw new InvalidObjectException("Il livello " + (s + 1) + " non è ottenuto dal precedente con una fusione");
+            }
+            int[] nextIds = new int[k - 1];
+            int[] fused = new int[2];
+            int found = 0;
+            int j = 0;
+            for (int p = 0; p < k; p++) {
+                if (j < k - 2 && sameMembers(level.get(p), next.get(j))) {
+                    nextIds[j++] = ids[p];
+                } else if (found < 2) {
+                    fused[found++] = p;
+                } else {
+                    throw new InvalidObjectException("Il livello " + (s + 1) + " non è ottenuto dal precedente con una fusione");
+                }
+            }
+            Cluster merged = next.get(k - 2);
+            if (found != 2 || merged.getSize() != level.get(fused[0]).getSize() + level.get(fused[1]).getSize()) {
+                throw new InvalidObjectException("Il livello " + (s + 1) + " non è ottenuto dal precedente con una fusione");
+            }
+            nextIds[k - 2] = linkage.add(ids[fused[0]], ids[fused[1]], Double.NaN, merged.getSize());
+            ids = nextIds;
+            level = next;
+        }
+        numberOfExamples = n;
+        merges = linkage;
+    }
+
+    /**
+     * Verifica se due cluster contengono gli stessi esempi.
+     *
+     * @param a Primo cluster.
+     * @param b Secondo cluster.
+     * @return {@code true} se i due cluster hanno gli stessi indici.
+     */
+    private static boolean sameMembers(Cluster a, Cluster b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getSize() != b.getSize()) {
+            return false;
+        }
+        for (int i = 0; i < a.getSize(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -3,9 +3,14 @@ package clustering;
 import data.Data;
 import data.InvalidSizeException;
 import distance.ClusterDistance;
+import distance.DistanceMatrix;
+import distance.LanceWilliamsDistance;
+import distance.SingleLinkDistance;
 
 import java.io.*;
 import java.nio.file.FileAlreadyExistsException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * La classe HierarchicalClusterMiner gestisce il processo di clustering gerarchico
@@ -18,6 +23,8 @@ import java.nio.file.FileAlreadyExistsException;
  * @author Elisa Vittoria Cosmai
  */
 public class HierachicalClusterMiner implements Serializable {
+	/** Versione della forma serializzata del modello, fissata perché i modelli salvati in {@link #DIRECTORY_PATH} restino leggibili. */
+	private static final long serialVersionUID = 7758586111552004231L;
 	/**
 	 * Dendrogramma che rappresenta la gerarchia dei cluster generati dal processo di clustering.
 	 */
@@ -58,30 +65,124 @@ public class HierachicalClusterMiner implements Serializable {
 	 * @throws InvalidClustersNumberException Se il numero di cluster disponibili è minore di 2.
 	 */
 	public void mine(Data data, ClusterDistance distance) throws InvalidDepthException, InvalidSizeException, InvalidClustersNumberException {
+		mine(data, distance, null);
+	}
+
+	/**
+	 * Esegue il clustering del dataset e costruisce il dendrogramma associato, distribuendo la ricerca
+	 * delle coppie di cluster più vicine sui thread del pool specificato.
+	 * Il dendrogramma prodotto è identico a quello dell'esecuzione sequenziale.
+	 *
+	 * @param data Il dataset su cui effettuare il clustering.
+	 * @param distance La funzione di distanza tra cluster.
+	 * @param pool Pool dedicato al clustering, oppure {@code null} per eseguire il clustering nel thread chiamante.
+	 * @throws InvalidDepthException Se la profondità del dendrogramma è minore del numero di esempi nel dataset.
+	 * @throws InvalidSizeException Se la dimensione di un cluster è minore di 2.
+	 * @throws InvalidClustersNumberException Se il numero di cluster disponibili è minore di 2.
+	 */
+	public void mine(Data data, ClusterDistance distance, ForkJoinPool pool) throws InvalidDepthException, InvalidSizeException, InvalidClustersNumberException {
 		if (getDepth() > data.getNumberOfExample()) {
 			throw new InvalidDepthException("Numero di esempi maggiore della profondità del dendrogramma!\n");
 		}
 
 		// Inizializza il livello 0 con un cluster per ciascun esempio
-		ClusterSet level0 = new ClusterSet(data.getNumberOfExample());
-		for (int i = 0; i < data.getNumberOfExample(); i++) {
-			Cluster c = new Cluster();
-			c.addData(i);
-			level0.add(c);
+		dendrogram.setNumberOfExamples(data.getNumberOfExample());
+
+		// Sceglie il motore di clustering: Single Link si ricava da un albero di copertura con memoria O(n),
+		// costruito da Borůvka sull'albero k-d per dataset grandi con pochi attributi, altrimenti da SLINK
+		// nel thread chiamante o da Prim sui thread del pool, le distanze riducibili
+		// dalla catena dei vicini più prossimi e le altre distanze aggiornabili con Lance-Williams
+		// dalla matrice tra cluster; qualunque altra distanza usa l'heap dei vicini
+		ClosestPairSearch search = new ClosestPairSearch(pool);
+		boolean matrix = DistanceMatrix.canCreate(data.getNumberOfExample(), data.isSinglePrecision());
+		MiningEngine engine;
+		if (distance instanceof SingleLinkDistance && BoruvkaEngine.suits(data)) {
+			engine = new BoruvkaEngine();
+		} else if (distance instanceof SingleLinkDistance) {
+			engine = pool == null ? new SlinkEngine() : new PrimEngine(pool);
+		} else if (distance instanceof LanceWilliamsDistance && ((LanceWilliamsDistance) distance).isReducible() && matrix) {
+			engine = new NnChainEngine((LanceWilliamsDistance) distance, pool);
+		} else if (distance instanceof LanceWilliamsDistance && matrix) {
+			engine = new LanceWilliamsEngine((LanceWilliamsDistance) distance, search);
+		} else {
+			engine = new NeighbourHeapEngine(search);
 		}
-		dendrogram.setClusterSet(level0, 0);
 
 		// Costruisce i livelli successivi del dendrogramma
-		for (int i = 1; i < getDepth(); i++) {
+		if (getDepth() > 1) {
 			try {
-				ClusterSet nextLevel = dendrogram.getClusterSet(i - 1).mergeClosestClusters(distance, data);
-				dendrogram.setClusterSet(nextLevel, i);
+				engine.mine(dendrogram, data, distance);
 			} catch (InvalidSizeException | InvalidClustersNumberException e) {
 				throw e;
 			}
 		}
 	}
 
+	/**
+	 * Verifica se il dendrogramma conserva l'albero di copertura degli esempi, che consente di ricavarlo
+	 * per una profondità diversa senza ripetere il clustering.
+	 *
+	 * @return {@code true} se il dendrogramma è stato costruito con la distanza Single Link.
+	 */
+	public boolean hasSpanningTree() {
+		return dendrogram.getSpanningTree() != null;
+	}
+
+	/**
+	 * Conta le fusioni del dendrogramma avvenute alla stessa distanza di un'altra fusione.
+	 * Dopo un clustering su un dataset in singola precisione indica quante fusioni potrebbero essere
+	 * state risolte diversamente in doppia precisione, dove le loro distanze sarebbero potute essere distinte.
+	 *
+	 * @return Numero di fusioni la cui distanza non è unica.
+	 */
+	public int countTiedMerges() {
+		LinkageMatrix merges = dendrogram.getMerges();
+		if (merges == null) {
+			return 0;
+		}
+		double[] heights = new double[merges.getLength()];
+		for (int s = 0; s < heights.length; s++) {
+			heights[s] = merges.getHeight(s);
+		}
+		Arrays.sort(heights);
+		int ties = 0;
+		for (int s = 0; s < heights.length; s++) {
+			if ((s > 0 && heights[s] == heights[s - 1]) || (s + 1 < heights.length && heights[s] == heights[s + 1])) {
+				ties++;
+			}
+		}
+		return ties;
+	}
+
+	/**
+	 * Ricava dall'albero di copertura conservato il dendrogramma con una profondità diversa,
+	 * in O(n) e senza ripetere il clustering. Il nuovo modello conserva lo stesso albero.
+	 *
+	 * @param depth La profondità del nuovo dendrogramma.
+	 * @param data Il dataset su cui è stato eseguito il clustering.
+	 * @return Un nuovo modello con il dendrogramma della profondità richiesta.
+	 * @throws InvalidDepthException Se la profondità non è valida per il dataset, se il dataset non è quello
+	 * del clustering oppure se il dendrogramma non conserva l'albero di copertura.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	public HierachicalClusterMiner cut(int depth, Data data) throws InvalidDepthException, InvalidSizeException {
+		SpanningTree tree = dendrogram.getSpanningTree();
+		if (tree == null) {
+			throw new InvalidDepthException("Il dendrogramma non conserva l'albero di copertura: per cambiarne la profondità è necessario ripetere il clustering\n");
+		}
+		if (tree.getNumberOfExamples() != data.getNumberOfExample()) {
+			throw new InvalidDepthException("Il dendrogramma è stato costruito su un dataset con un numero di esempi diverso\n");
+		}
+		if (depth > data.getNumberOfExample()) {
+			throw new InvalidDepthException("Numero di esempi maggiore della profondità del dendrogramma!\n");
+		}
+
+		HierachicalClusterMiner miner = new HierachicalClusterMiner(depth);
+		miner.dendrogram.setSpanningTree(tree);
+		miner.dendrogram.setMerges(tree.merges(depth - 1, data));
+		return miner;
+	}
+
 	/**
 	 * Restituisce una rappresentazione testuale del dendrogramma.
 	 *
@@ -103,6 +204,74 @@ public class HierachicalClusterMiner implements Serializable {
 		return dendrogram.toString(data);
 	}
 
+	/**
+	 * Restituisce una rappresentazione testuale di un singolo livello del dendrogramma.
+	 *
+	 * @param data Il dataset di riferimento.
+	 * @param level Il livello da rappresentare, compreso tra 0 e la profondità meno uno.
+	 * @return Una stringa che rappresenta il livello con i dati dei cluster.
+	 * @throws InvalidDepthException Se il livello non appartiene al dendrogramma.
+	 */
+	public String toString(Data data, int level) throws InvalidDepthException {
+		return toString(data, level, level);
+	}
+
+	/**
+	 * Restituisce una rappresentazione testuale dei livelli del dendrogramma compresi in un intervallo,
+	 * nello stesso formato di {@link #toString(Data)}. Vengono ricostruiti soltanto i livelli richiesti.
+	 *
+	 * @param data Il dataset di riferimento.
+	 * @param fromLevel Il primo livello da rappresentare.
+	 * @param toLevel L'ultimo livello da rappresentare, incluso.
+	 * @return Una stringa che rappresenta i livelli richiesti con i dati dei cluster.
+	 * @throws InvalidDepthException Se l'intervallo non è compreso tra 0 e la profondità meno uno.
+	 */
+	public String toString(Data data, int fromLevel, int toLevel) throws InvalidDepthException {
+		checkLevels(fromLevel, toLevel);
+		return dendrogram.toString(data, fromLevel, toLevel);
+	}
+
+	/**
+	 * Scrive il dendrogramma nello stesso formato di {@link #toString(Data)}, livello per livello e cluster per cluster,
+	 * senza costruirne in memoria la rappresentazione testuale completa.
+	 *
+	 * @param out La destinazione della rappresentazione testuale.
+	 * @param data Il dataset di riferimento.
+	 * @throws IOException Se si verifica un errore durante la scrittura.
+	 */
+	public void write(Appendable out, Data data) throws IOException {
+		dendrogram.write(out, data);
+	}
+
+	/**
+	 * Scrive i livelli del dendrogramma compresi in un intervallo, nello stesso formato di {@link #toString(Data)},
+	 * senza costruirne in memoria la rappresentazione testuale completa.
+	 *
+	 * @param out La destinazione della rappresentazione testuale.
+	 * @param data Il dataset di riferimento.
+	 * @param fromLevel Il primo livello da rappresentare.
+	 * @param toLevel L'ultimo livello da rappresentare, incluso.
+	 * @throws InvalidDepthException Se l'intervallo non è compreso tra 0 e la profondità meno uno.
+	 * @throws IOException Se si verifica un errore durante la scrittura.
+	 */
+	public void write(Appendable out, Data data, int fromLevel, int toLevel) throws InvalidDepthException, IOException {
+		checkLevels(fromLevel, toLevel);
+		dendrogram.write(out, data, fromLevel, toLevel);
+	}
+
+	/**
+	 * Verifica che un intervallo di livelli appartenga al dendrogramma.
+	 *
+	 * @param fromLevel Il primo livello dell'intervallo.
+	 * @param toLevel L'ultimo livello dell'intervallo, incluso.
+	 * @throws InvalidDepthException Se l'intervallo non è compreso tra 0 e la profondità meno uno.
+	 */
+	public void checkLevels(int fromLevel, int toLevel) throws InvalidDepthException {
+		if (fromLevel < 0 || toLevel < fromLevel || toLevel >= getDepth()) {
+			throw new InvalidDepthException("Intervallo di livelli non valido: il dendrogramma ha i livelli da 0 a " + (getDepth() - 1) + "\n");
+		}
+	}
+
 	/**
 	 * Carica un'istanza di HierarchicalClusterMiner da un file serializzato.
 	 *
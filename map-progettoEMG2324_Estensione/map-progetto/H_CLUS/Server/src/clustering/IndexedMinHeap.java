@@ -0,0 +1,158 @@
+package clustering;
+
+import java.util.Arrays;
+
+/**
+ * Heap binario di minimo indicizzato sugli identificativi dei cluster.
+ *
+ * Ogni cluster compare al più una volta nell'heap, con priorità pari alla distanza dal suo vicino
+ * più prossimo; a parità di distanza precede il cluster con identificativo minore, cioè quello che
+ * compare prima nel {@link ClusterSet}. Le priorità sono lette dall'array {@code keys} condiviso
+ * con il chiamante, che dopo averle modificate deve invocare {@link #update(int)}.
+ */
+class IndexedMinHeap {
+	/** Identificativi dei cluster, disposti come heap binario. */
+	private final int[] heap;
+	/** Posizione nell'heap di ciascun identificativo, oppure -1 se assente. */
+	private final int[] position;
+	/** Priorità di ciascun identificativo. */
+	private final double[] keys;
+	/** Numero di elementi presenti nell'heap. */
+	private int size = 0;
+
+	/**
+	 * Costruisce un heap vuoto.
+	 *
+	 * @param capacity Numero massimo di identificativi gestibili.
+	 * @param keys Priorità di ciascun identificativo.
+	 */
+	IndexedMinHeap(int capacity, double[] keys) {
+		this.heap = new int[capacity];
+		this.position = new int[capacity];
+		this.keys = keys;
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Verifica se l'heap è vuoto.
+	 *
+	 * @return {@code true} se l'heap non contiene elementi.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Verifica se un identificativo è presente nell'heap.
+	 *
+	 * @param id Identificativo del cluster.
+	 * @return {@code true} se il cluster è presente.
+	 */
+	boolean contains(int id) {
+		return position[id] != -1;
+	}
+
+	/**
+	 * Restituisce l'identificativo con priorità minima, senza rimuoverlo.
+	 *
+	 * @return Identificativo in cima all'heap.
+	 */
+	int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Inserisce un identificativo oppure, se già presente, ne ripristina la posizione dopo una modifica della priorità.
+	 *
+	 * @param id Identificativo del cluster.
+	 */
+	void update(int id) {
+		if (position[id] == -1) {
+			heap[size] = id;
+			position[id] = size++;
+		}
+		siftUp(position[id]);
+		siftDown(position[id]);
+	}
+
+	/**
+	 * Rimuove un identificativo dall'heap, se presente.
+	 *
+	 * @param id Identificativo del cluster.
+	 */
+	void remove(int id) {
+		int p = position[id];
+		if (p == -1) {
+			return;
+		}
+		position[id] = -1;
+		size--;
+		if (p < size) {
+			int moved = heap[size];
+			heap[p] = moved;
+			position[moved] = p;
+			siftUp(p);
+			siftDown(position[moved]);
+		}
+	}
+
+	/**
+	 * Confronta due identificativi secondo priorità e, a parità, secondo l'ordine del ClusterSet.
+	 *
+	 * @param a Primo identificativo.
+	 * @param b Secondo identificativo.
+	 * @return {@code true} se {@code a} precede {@code b}.
+	 */
+	private boolean less(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	/**
+	 * Sposta verso la radice l'elemento nella posizione indicata finché precede il padre.
+	 *
+	 * @param p Posizione dell'elemento.
+	 */
+	private void siftUp(int p) {
+		while (p > 0) {
+			int q = (p - 1) / 2;
+			if (!less(heap[p], heap[q])) {
+				break;
+			}
+			swap(p, q);
+			p = q;
+		}
+	}
+
+	/**
+	 * Sposta verso le foglie l'elemento nella posizione indicata finché è seguito da un figlio.
+	 *
+	 * @param p Posizione dell'elemento.
+	 */
+	private void siftDown(int p) {
+		while (2 * p + 1 < size) {
+			int c = 2 * p + 1;
+			if (c + 1 < size && less(heap[c + 1], heap[c])) {
+				c++;
+			}
+			if (!less(heap[c], heap[p])) {
+				break;
+			}
+			swap(p, c);
+			p = c;
+		}
+	}
+
+	/**
+	 * Scambia due posizioni dell'heap aggiornando l'indice.
+	 *
+	 * @param p Prima posizione.
+	 * @param q Seconda posizione.
+	 */
+	private void swap(int p, int q) {
+		int t = heap[p];
+		heap[p] = heap[q];
+		heap[q] = t;
+		position[heap[p]] = p;
+		position[heap[q]] = q;
+	}
+}
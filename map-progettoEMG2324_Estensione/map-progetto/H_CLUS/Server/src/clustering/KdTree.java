@@ -0,0 +1,242 @@
+package clustering;
+
+import data.Data;
+
+/**
+ * Indice spaziale sugli esempi di un dataset: un albero k-d i cui nodi rappresentano intervalli
+ * contigui di una permutazione degli esempi, racchiusi nel più piccolo box allineato agli assi.
+ *
+ * Ogni nodo interno divide i propri esempi a metà lungo l'attributo di estensione massima, finché
+ * un nodo non contiene al più {@link #LEAF_SIZE} esempi. I nodi sono memorizzati in array paralleli
+ * e i box in un unico blocco di {@code double}, senza oggetti per nodo.
+ * La distanza minima tra i box di due nodi è un limite inferiore della distanza tra i loro esempi,
+ * nella stessa metrica di {@link Data#distance(int, int)} (somma dei quadrati delle differenze).
+ */
+class KdTree {
+	/** Numero massimo di esempi di una foglia. */
+	static final int LEAF_SIZE = 16;
+
+	/** Dataset indicizzato. */
+	private final Data data;
+	/** Numero di attributi degli esempi. */
+	private final int d;
+	/** Permutazione degli esempi: il nodo {@code v} contiene {@code index[start[v]..end[v]-1]}. */
+	private final int[] index;
+	/** Prima posizione di ciascun nodo in {@code index}. */
+	private final int[] start;
+	/** Prima posizione successiva a ciascun nodo in {@code index}. */
+	private final int[] end;
+	/** Figlio sinistro di ciascun nodo, oppure -1 per le foglie. */
+	private final int[] left;
+	/** Figlio destro di ciascun nodo, oppure -1 per le foglie. */
+	private final int[] right;
+	/** Estremi inferiori dei box: l'attributo {@code j} del nodo {@code v} si trova in posizione {@code v*d + j}. */
+	private final double[] lower;
+	/** Estremi superiori dei box, con la stessa disposizione di {@code lower}. */
+	private final double[] upper;
+	/** Numero di nodi creati. */
+	private int nodes = 0;
+
+	/**
+	 * Costruisce l'indice su tutti gli esempi del dataset.
+	 *
+	 * @param data Dataset da indicizzare, con almeno un esempio.
+	 */
+	KdTree(Data data) {
+		this.data = data;
+		this.d = data.getNumberOfAttributes();
+		int n = data.getNumberOfExample();
+		this.index = new int[n];
+		for (int i = 0; i < n; i++) {
+			index[i] = i;
+		}
+
+		// Un albero con foglie di almeno LEAF_SIZE/2 esempi ha meno di 4n/LEAF_SIZE + 1 nodi
+		int capacity = 4 * (n / LEAF_SIZE) + 2;
+		this.start = new int[capacity];
+		this.end = new int[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.lower = new double[capacity * d];
+		this.upper = new double[capacity * d];
+		build(0, n);
+	}
+
+	/**
+	 * Crea il nodo degli esempi {@code index[from..to-1]} e, se necessario, i suoi discendenti.
+	 *
+	 * @param from Prima posizione del nodo.
+	 * @param to Prima posizione successiva al nodo.
+	 * @return Il nodo creato.
+	 */
+	private int build(int from, int to) {
+		int v = nodes++;
+		start[v] = from;
+		end[v] = to;
+		left[v] = -1;
+		right[v] = -1;
+
+		// Box del nodo e attributo di estensione massima
+		int split = 0;
+		double spread = -1.0;
+		for (int j = 0; j < d; j++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int p = from; p < to; p++) {
+				double x = data.getValue(index[p], j);
+				min = Math.min(min, x);
+				max = Math.max(max, x);
+			}
+			lower[v * d + j] = min;
+			upper[v * d + j] = max;
+			if (max - min > spread) {
+				spread = max - min;
+				split = j;
+			}
+		}
+
+		if (to - from > LEAF_SIZE && spread > 0) {
+			int mid = (from + to) >>> 1;
+			select(from, to - 1, mid, split);
+			left[v] = build(from, mid);
+			right[v] = build(mid, to);
+		}
+		return v;
+	}
+
+	/**
+	 * Riordina {@code index[lo..hi]} in modo che la posizione {@code k} contenga l'esempio che vi si troverebbe
+	 * ordinando per l'attributo {@code j}, con i precedenti non maggiori e i successivi non minori.
+	 *
+	 * @param lo Prima posizione.
+	 * @param hi Ultima posizione, inclusa.
+	 * @param k Posizione da determinare.
+	 * @param j Attributo di ordinamento.
+	 */
+	private void select(int lo, int hi, int k, int j) {
+		while (lo < hi) {
+			double pivot = data.getValue(index[(lo + hi) >>> 1], j);
+			int a = lo;
+			int b = hi;
+			while (a <= b) {
+				while (data.getValue(index[a], j) < pivot) {
+					a++;
+				}
+				while (data.getValue(index[b], j) > pivot) {
+					b--;
+				}
+				if (a <= b) {
+					int t = index[a];
+					index[a] = index[b];
+					index[b] = t;
+					a++;
+					b--;
+				}
+			}
+			if (k <= b) {
+				hi = b;
+			} else if (k >= a) {
+				lo = a;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Restituisce il nodo radice, che contiene tutti gli esempi.
+	 *
+	 * @return La radice.
+	 */
+	int root() {
+		return 0;
+	}
+
+	/**
+	 * Restituisce il numero di nodi dell'albero; i nodi sono numerati da 0 e ogni figlio segue il padre.
+	 *
+	 * @return Numero di nodi.
+	 */
+	int size() {
+		return nodes;
+	}
+
+	/**
+	 * Verifica se un nodo è una foglia.
+	 *
+	 * @param v Nodo.
+	 * @return {@code true} se il nodo non ha figli.
+	 */
+	boolean isLeaf(int v) {
+		return left[v] == -1;
+	}
+
+	/**
+	 * Restituisce il figlio sinistro di un nodo interno.
+	 *
+	 * @param v Nodo.
+	 * @return Il figlio sinistro.
+	 */
+	int left(int v) {
+		return left[v];
+	}
+
+	/**
+	 * Restituisce il figlio destro di un nodo interno.
+	 *
+	 * @param v Nodo.
+	 * @return Il figlio destro.
+	 */
+	int right(int v) {
+		return right[v];
+	}
+
+	/**
+	 * Restituisce la prima posizione di un nodo nella permutazione degli esempi.
+	 *
+	 * @param v Nodo.
+	 * @return Prima posizione, da usare con {@link #example(int)}.
+	 */
+	int start(int v) {
+		return start[v];
+	}
+
+	/**
+	 * Restituisce la prima posizione successiva a un nodo nella permutazione degli esempi.
+	 *
+	 * @param v Nodo.
+	 * @return Prima posizione successiva.
+	 */
+	int end(int v) {
+		return end[v];
+	}
+
+	/**
+	 * Restituisce l'esempio in una posizione della permutazione.
+	 *
+	 * @param p Posizione.
+	 * @return Indice dell'esempio nel dataset.
+	 */
+	int example(int p) {
+		return index[p];
+	}
+
+	/**
+	 * Calcola la distanza minima tra i box di due nodi, un limite inferiore della distanza tra
+	 * un esempio del primo e un esempio del secondo.
+	 *
+	 * @param a Primo nodo.
+	 * @param b Secondo nodo.
+	 * @return La somma dei quadrati delle distanze tra i box lungo ciascun attributo.
+	 */
+	double minDistance(int a, int b) {
+		double sum = 0.0;
+		for (int j = 0; j < d; j++) {
+			double gap = Math.max(lower[a * d + j] - upper[b * d + j], lower[b * d + j] - upper[a * d + j]);
+			if (gap > 0) {
+				sum += gap * gap;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,111 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+import distance.DistanceMatrix;
+import distance.LanceWilliamsDistance;
+
+/**
+ * Motore di clustering che mantiene una matrice delle distanze tra cluster e, dopo ogni fusione,
+ * aggiorna soltanto la riga del cluster fuso tramite la formula di Lance-Williams.
+ *
+ * La matrice è indicizzata per "slot": all'inizio lo slot {@code i} contiene l'esempio {@code i},
+ * e il cluster ottenuto da una fusione riusa lo slot del primo dei due cluster fusi, mentre le fusioni
+ * vengono registrate con gli identificativi dei cluster in una {@link LinkageMatrix}.
+ * Ogni livello costa così O(k^2) confronti, con {@code k} numero di cluster, invece di
+ * riesaminare tutte le coppie di esempi dei cluster confrontati.
+ */
+class LanceWilliamsEngine implements MiningEngine {
+	/** Distanza tra cluster da utilizzare per l'aggiornamento della matrice. */
+	private final LanceWilliamsDistance linkage;
+	/** Ricerca della coppia più vicina, sequenziale o parallela. */
+	private final ClosestPairSearch search;
+
+	/**
+	 * Costruisce il motore per la distanza specificata.
+	 *
+	 * @param linkage Distanza tra cluster aggiornabile con la formula di Lance-Williams.
+	 * @param search Ricerca della coppia più vicina, sequenziale o parallela.
+	 */
+	LanceWilliamsEngine(LanceWilliamsDistance linkage, ClosestPairSearch search) {
+		this.linkage = linkage;
+		this.search = search;
+	}
+
+	/**
+	 * Costruisce i livelli del dendrogramma aggiornando la matrice delle distanze tra cluster dopo ogni fusione.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster (non utilizzata, si usa {@code linkage}).
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	@Override
+	public void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException {
+		// Al livello 0 le distanze tra cluster coincidono con quelle tra esempi
+		try (DistanceMatrix matrix = DistanceMatrix.create(data, search.getPool())) {
+			mine(dendrogram, matrix);
+		}
+	}
+
+	/**
+	 * Costruisce i livelli del dendrogramma a partire da una matrice delle distanze tra esempi già calcolata,
+	 * che viene aggiornata in place; il rilascio della matrice resta a carico del chiamante.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param matrix Matrice delle distanze tra gli esempi del dataset.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	void mine(Dendrogram dendrogram, DistanceMatrix matrix) throws InvalidSizeException, InvalidClustersNumberException {
+		int n = matrix.size();
+		int[] order = new int[n]; // slot dei cluster attivi, nell'ordine in cui compaiono nel ClusterSet
+		int[] size = new int[n];
+		int[] ids = new int[n]; // identificativo del cluster che occupa ciascuno slot
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			size[i] = 1;
+			ids[i] = i;
+		}
+		int k = n;
+
+		LinkageMatrix merges = new LinkageMatrix(n, dendrogram.getDepth() - 1);
+		for (int l = 1; l < dendrogram.getDepth(); l++) {
+			if (k <= 1) {
+				throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
+			}
+
+			// Trova la coppia più vicina, a parità di distanza la prima nell'ordine del ClusterSet
+			int[] pair = search.closestPair(k, (p, q) -> matrix.get(order[p], order[q]));
+			int p1 = pair[0];
+			int p2 = pair[1];
+			int a = order[p1];
+			int b = order[p2];
+
+			// Aggiorna la riga del cluster fuso, che occupa lo slot di a
+			double dab = matrix.get(a, b);
+			for (int p = 0; p < k; p++) {
+				int s = order[p];
+				if (s != a && s != b) {
+					matrix.set(a, s, linkage.update(matrix.get(a, s), matrix.get(b, s), dab, size[a], size[b], size[s]));
+				}
+			}
+
+			ids[a] = merges.add(ids[a], ids[b], dab, size[a] + size[b]);
+			size[a] += size[b];
+
+			// Rimuove le due posizioni fuse e accoda il nuovo cluster, come fa il ClusterSet
+			int w = 0;
+			for (int p = 0; p < k; p++) {
+				if (p != p1 && p != p2) {
+					order[w++] = order[p];
+				}
+			}
+			order[w] = a;
+			k--;
+		}
+		dendrogram.setMerges(merges);
+	}
+}
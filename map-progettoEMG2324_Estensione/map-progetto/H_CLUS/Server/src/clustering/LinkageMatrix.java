@@ -0,0 +1,123 @@
+package clustering;
+
+import java.io.Serializable;
+
+/**
+ * La classe LinkageMatrix rappresenta la sequenza di fusioni eseguite dal clustering gerarchico,
+ * nello stesso formato della "linkage matrix" di SciPy.
+ *
+ * Gli esempi del dataset sono identificati dai cluster {@code 0..n-1}, mentre il cluster creato
+ * dalla fusione {@code s} riceve l'identificativo {@code n + s}. Per ogni fusione vengono memorizzati
+ * i due cluster fusi, con {@code first < second}, la distanza alla quale sono stati fusi e
+ * la dimensione del cluster risultante.
+ *
+ * Poiché i cluster sopravvissuti mantengono il loro ordine e il cluster fuso viene accodato,
+ * l'ordine degli identificativi coincide con l'ordine dei cluster nel {@link ClusterSet} di ogni livello.
+ *
+ * Implementa {@link Serializable} per essere salvata insieme al dendrogramma.
+ */
+class LinkageMatrix implements Serializable {
+	/** Versione della forma serializzata della sequenza di fusioni, da mantenere se si aggiungono metodi. */
+	private static final long serialVersionUID = -5426567933039995142L;
+	/** Numero di esempi del dataset. */
+	private final int n;
+	/** Identificativo del primo cluster di ciascuna fusione. */
+	private final int[] first;
+	/** Identificativo del secondo cluster di ciascuna fusione. */
+	private final int[] second;
+	/** Distanza alla quale è avvenuta ciascuna fusione. */
+	private final double[] height;
+	/** Dimensione del cluster creato da ciascuna fusione. */
+	private final int[] size;
+	/** Numero di fusioni memorizzate. */
+	private int length = 0;
+
+	/**
+	 * Costruisce una sequenza di fusioni vuota.
+	 *
+	 * @param n Numero di esempi del dataset.
+	 * @param capacity Numero massimo di fusioni memorizzabili.
+	 */
+	LinkageMatrix(int n, int capacity) {
+		this.n = n;
+		this.first = new int[capacity];
+		this.second = new int[capacity];
+		this.height = new double[capacity];
+		this.size = new int[capacity];
+	}
+
+	/**
+	 * Aggiunge una fusione in coda alla sequenza.
+	 *
+	 * @param a Identificativo di uno dei due cluster fusi.
+	 * @param b Identificativo dell'altro cluster fuso.
+	 * @param h Distanza alla quale i due cluster sono stati fusi.
+	 * @param newSize Dimensione del cluster risultante.
+	 * @return L'identificativo assegnato al cluster risultante.
+	 */
+	int add(int a, int b, double h, int newSize) {
+		first[length] = Math.min(a, b);
+		second[length] = Math.max(a, b);
+		height[length] = h;
+		size[length] = newSize;
+		return n + length++;
+	}
+
+	/**
+	 * Restituisce il numero di esempi del dataset.
+	 *
+	 * @return Numero di esempi.
+	 */
+	int getNumberOfExamples() {
+		return n;
+	}
+
+	/**
+	 * Restituisce il numero di fusioni memorizzate.
+	 *
+	 * @return Numero di fusioni.
+	 */
+	int getLength() {
+		return length;
+	}
+
+	/**
+	 * Restituisce l'identificativo del primo cluster della fusione {@code s}.
+	 *
+	 * @param s Indice della fusione.
+	 * @return Identificativo del cluster che precede l'altro nel ClusterSet.
+	 */
+	int getFirst(int s) {
+		return first[s];
+	}
+
+	/**
+	 * Restituisce l'identificativo del secondo cluster della fusione {@code s}.
+	 *
+	 * @param s Indice della fusione.
+	 * @return Identificativo del cluster che segue l'altro nel ClusterSet.
+	 */
+	int getSecond(int s) {
+		return second[s];
+	}
+
+	/**
+	 * Restituisce la distanza alla quale è avvenuta la fusione {@code s}.
+	 *
+	 * @param s Indice della fusione.
+	 * @return Distanza tra i due cluster fusi.
+	 */
+	double getHeight(int s) {
+		return height[s];
+	}
+
+	/**
+	 * Restituisce la dimensione del cluster creato dalla fusione {@code s}.
+	 *
+	 * @param s Indice della fusione.
+	 * @return Numero di esempi del cluster risultante.
+	 */
+	int getSize(int s) {
+		return size[s];
+	}
+}
@@ -0,0 +1,29 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+
+/**
+ * Interfaccia che definisce una strategia di costruzione del dendrogramma.
+ *
+ * Ogni implementazione riceve un dendrogramma il cui livello 0 contiene già un cluster per
+ * ciascun esempio e ne costruisce i livelli successivi, fondendo a ogni livello i due cluster
+ * più vicini secondo la distanza scelta; i livelli vengono registrati nel dendrogramma come
+ * sequenza di fusioni tramite {@link Dendrogram#setMerges(LinkageMatrix)}.
+ * Tutte le implementazioni devono produrre gli stessi livelli della ricerca esaustiva, che a ogni livello
+ * confronta tutte le coppie di cluster e a parità di distanza fonde la prima nell'ordine del {@link ClusterSet},
+ * come fa {@link LanceWilliamsEngine} con {@link ClosestPairSearch#closestPair}.
+ */
+interface MiningEngine {
+	/**
+	 * Costruisce i livelli del dendrogramma successivi al livello 0.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException;
+}
@@ -0,0 +1,213 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+import distance.DistanceMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Motore di clustering generico che mantiene, per ogni cluster, il vicino più prossimo tra i cluster
+ * che lo seguono nel {@link ClusterSet} e ordina i cluster in un {@link IndexedMinHeap} in base a tale distanza.
+ *
+ * Dopo ogni fusione viene calcolata solo la distanza di ciascun cluster dal nuovo cluster; i cluster
+ * il cui vicino è stato fuso vengono marcati come non aggiornati, mantenendo nell'heap la vecchia
+ * distanza come limite inferiore, e la ricerca completa del loro vicino viene rimandata al momento
+ * in cui raggiungono la cima dell'heap. Non richiede che la distanza sia riducibile né aggiornabile
+ * con Lance-Williams, per cui si applica a qualunque {@link ClusterDistance}.
+ *
+ * A parità di distanza vengono preferiti i cluster che compaiono prima nel ClusterSet, per cui
+ * i livelli prodotti coincidono con quelli della ricerca esaustiva.
+ */
+class NeighbourHeapEngine implements MiningEngine {
+	/** Ricerca iniziale dei vicini più prossimi, sequenziale o parallela. */
+	private final ClosestPairSearch search;
+	/** Dataset su cui è eseguito il clustering. */
+	private Data data;
+	/** Metrica per il calcolo della distanza tra i cluster. */
+	private ClusterDistance distance;
+	/** Matrice delle distanze tra esempi, oppure {@code null} se non allocabile. */
+	private DistanceMatrix matrix;
+	/** Cluster indicizzati per identificativo. */
+	private Cluster[] clusters;
+	/** Identificativi dei cluster attivi, nell'ordine del ClusterSet. */
+	private int[] alive;
+	/** Numero di cluster attivi. */
+	private int k;
+	/** Vicino più prossimo di ciascun cluster tra quelli che lo seguono. */
+	private int[] nearest;
+	/** Distanza dal vicino più prossimo, oppure suo limite inferiore se il vicino non è aggiornato. */
+	private double[] nearestDistance;
+	/** Indica i cluster il cui vicino più prossimo deve essere ricalcolato. */
+	private boolean[] stale;
+	/** Cluster ordinati per distanza dal vicino più prossimo. */
+	private IndexedMinHeap heap;
+
+	/**
+	 * Costruisce il motore.
+	 *
+	 * @param search Ricerca dei vicini più prossimi al livello 0, sequenziale o parallela.
+	 */
+	NeighbourHeapEngine(ClosestPairSearch search) {
+		this.search = search;
+	}
+
+	/**
+	 * Costruisce i livelli del dendrogramma estraendo a ogni livello dall'heap la coppia più vicina.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	@Override
+	public void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException {
+		int n = data.getNumberOfExample();
+		int maxMerges = dendrogram.getDepth() - 1;
+		this.data = data;
+		this.distance = distance;
+		this.matrix = DistanceMatrix.fits(n, data.isSinglePrecision()) ? new DistanceMatrix(data, search.getPool()) : null;
+		this.clusters = new Cluster[n + maxMerges];
+		this.alive = new int[n];
+		this.nearest = new int[n + maxMerges];
+		this.nearestDistance = new double[n + maxMerges];
+		this.stale = new boolean[n + maxMerges];
+		this.heap = new IndexedMinHeap(n + maxMerges, nearestDistance);
+		Arrays.fill(nearestDistance, Double.POSITIVE_INFINITY); // nessun vicino noto
+
+		for (int i = 0; i < n; i++) {
+			clusters[i] = new Cluster();
+			clusters[i].addData(i);
+			alive[i] = i;
+		}
+		k = n;
+
+		// Al livello 0 la posizione di ciascun cluster coincide con il suo identificativo
+		int[] first = new int[n];
+		double[] firstDistance = new double[n];
+		search.nearestFollowers(n, this::distance, first, firstDistance);
+		for (int x = 0; x < n - 1; x++) {
+			nearest[x] = first[x];
+			nearestDistance[x] = firstDistance[x];
+			heap.update(x);
+		}
+
+		LinkageMatrix merges = new LinkageMatrix(n, maxMerges);
+		while (merges.getLength() < maxMerges) {
+			if (heap.isEmpty()) {
+				throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
+			}
+
+			// Ricalcola i vicini non aggiornati finché in cima all'heap c'è una distanza esatta
+			int a = heap.peek();
+			while (stale[a]) {
+				findNearest(positionOf(a));
+				a = heap.peek();
+			}
+			int b = nearest[a];
+			double h = nearestDistance[a];
+
+			Cluster merged = clusters[a].mergeCluster(clusters[b]);
+			int z = merges.add(a, b, h, merged.getSize());
+			clusters[z] = merged;
+			clusters[a] = null;
+			clusters[b] = null;
+			heap.remove(a);
+			heap.remove(b);
+
+			// Rimuove i cluster fusi mantenendo l'ordine e accoda il nuovo cluster
+			int w = 0;
+			for (int p = 0; p < k; p++) {
+				if (alive[p] != a && alive[p] != b) {
+					alive[w++] = alive[p];
+				}
+			}
+			alive[w] = z;
+			k--;
+
+			// Il nuovo cluster segue tutti gli altri: è un candidato vicino per ciascuno di essi
+			for (int p = 0; p < k - 1; p++) {
+				int x = alive[p];
+				double d = distance(x, z);
+				boolean lostNearest = nearest[x] == a || nearest[x] == b;
+				if (d < nearestDistance[x]) {
+					nearest[x] = z;
+					nearestDistance[x] = d;
+					stale[x] = false;
+					heap.update(x);
+				} else if (lostNearest) {
+					// La vecchia distanza resta un limite inferiore valido per il nuovo vicino
+					stale[x] = true;
+				}
+			}
+		}
+		dendrogram.setMerges(merges);
+	}
+
+	/**
+	 * Cerca il vicino più prossimo del cluster nella posizione indicata tra i cluster che lo seguono
+	 * e ne aggiorna la priorità nell'heap.
+	 *
+	 * @param p Posizione del cluster nell'ordine del ClusterSet.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	private void findNearest(int p) throws InvalidSizeException {
+		int x = alive[p];
+		stale[x] = false;
+		if (p == k - 1) {
+			nearestDistance[x] = Double.POSITIVE_INFINITY;
+			heap.remove(x);
+			return;
+		}
+
+		double minD = Double.MAX_VALUE;
+		int y = alive[p + 1];
+		for (int q = p + 1; q < k; q++) {
+			double d = distance(x, alive[q]);
+			if (d < minD) {
+				minD = d;
+				y = alive[q];
+			}
+		}
+		nearest[x] = y;
+		nearestDistance[x] = minD;
+		heap.update(x);
+	}
+
+	/**
+	 * Restituisce la posizione di un cluster attivo nell'ordine del ClusterSet.
+	 *
+	 * @param id Identificativo del cluster.
+	 * @return Posizione del cluster.
+	 */
+	private int positionOf(int id) {
+		int lo = 0;
+		int hi = k - 1;
+		// Gli identificativi attivi sono in ordine crescente
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (alive[mid] < id) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Calcola la distanza tra due cluster attivi, con {@code x} che precede {@code y}.
+	 *
+	 * @param x Identificativo del primo cluster.
+	 * @param y Identificativo del secondo cluster.
+	 * @return La distanza tra i due cluster.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	private double distance(int x, int y) throws InvalidSizeException {
+		return matrix != null
+				? distance.distance(clusters[x], clusters[y], data, matrix)
+				: distance.distance(clusters[x], clusters[y], data);
+	}
+}
@@ -0,0 +1,210 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+import distance.DistanceMatrix;
+import distance.LanceWilliamsDistance;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Motore di clustering basato sull'algoritmo della catena dei vicini più prossimi (NN-chain),
+ * valido per le distanze riducibili come Average Link.
+ *
+ * La catena parte da un cluster qualsiasi e accoda ogni volta il vicino più prossimo dell'ultimo
+ * elemento; quando due elementi consecutivi sono l'uno il vicino più prossimo dell'altro vengono fusi.
+ * Per le distanze riducibili queste fusioni sono le stesse della ricerca esaustiva, che si ottengono
+ * ordinandole per distanza: l'intera gerarchia costa così O(n^2) tempo, con le distanze tra cluster
+ * aggiornate tramite la formula di Lance-Williams.
+ *
+ * La ricerca esaustiva, a parità di distanza, fonde la coppia di cluster che compaiono per primi nel
+ * ClusterSet, cioè con gli identificativi minori. L'identificativo di un cluster si conosce solo alla fine,
+ * ma il suo ordine rispetto agli altri sì: gli esempi precedono i cluster fusi, e questi seguono l'ordine
+ * delle fusioni che li hanno creati, cioè la distanza di fusione e poi il primo dei due cluster fusi.
+ * La catena sceglie tra vicini alla stessa distanza quello che viene prima in quest'ordine, e le fusioni
+ * vengono ordinate allo stesso modo: la gerarchia coincide con quella della ricerca esaustiva anche
+ * in caso di parità. Come in {@link LanceWilliamsEngine}, distanze uguali in aritmetica esatta ma ottenute
+ * con aggiornamenti in un ordine diverso possono differire nell'ultima cifra: in quel caso è l'arrotondamento
+ * a decidere la coppia fusa.
+ */
+class NnChainEngine implements MiningEngine {
+	/** Distanza tra cluster da utilizzare per l'aggiornamento della matrice. */
+	private final LanceWilliamsDistance linkage;
+	/** Pool su cui calcolare la matrice delle distanze, oppure {@code null} per il calcolo sequenziale. */
+	private final ForkJoinPool pool;
+
+	/** Numero di esempi. */
+	private int n;
+	/** Distanza di ciascuna fusione, indicizzata come i nodi fusi {@code n+m}. */
+	private double[] height;
+	/** Nodo che viene prima tra i due fusi da ciascuna fusione. */
+	private int[] low;
+	/** Nodo che viene dopo tra i due fusi da ciascuna fusione. */
+	private int[] high;
+
+	/**
+	 * Costruisce il motore per la distanza specificata.
+	 *
+	 * @param linkage Distanza tra cluster riducibile e aggiornabile con la formula di Lance-Williams.
+	 * @param pool Pool dedicato al clustering, oppure {@code null} per il calcolo sequenziale.
+	 */
+	NnChainEngine(LanceWilliamsDistance linkage, ForkJoinPool pool) {
+		this.linkage = linkage;
+		this.pool = pool;
+	}
+
+	/**
+	 * Costruisce i livelli del dendrogramma con l'algoritmo NN-chain e memorizza le distanze di fusione.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster (non utilizzata, si usa {@code linkage}).
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	@Override
+	public void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException {
+		n = data.getNumberOfExample();
+		if (n <= 1) {
+			throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
+		}
+
+		int[] size;
+		try (DistanceMatrix matrix = DistanceMatrix.create(data, pool)) {
+			size = chain(matrix);
+		}
+		dendrogram.setMerges(sortMerges(size, dendrogram.getDepth() - 1));
+	}
+
+	/**
+	 * Esegue l'algoritmo NN-chain sulla matrice delle distanze, che viene aggiornata in place.
+	 * Ogni cluster occupa lo slot del suo esempio di indice minore; i cluster sono identificati da nodi:
+	 * l'esempio {@code i} è il nodo {@code i} e il cluster creato dalla fusione {@code m} il nodo {@code n+m}.
+	 *
+	 * @param matrix Matrice delle distanze tra esempi, usata come matrice delle distanze tra cluster.
+	 * @return La dimensione del cluster creato da ciascuna fusione, nell'ordine in cui sono state eseguite.
+	 */
+	private int[] chain(DistanceMatrix matrix) {
+		boolean[] active = new boolean[n];
+		int[] size = new int[n];
+		int[] node = new int[n]; // nodo del cluster che occupa ciascuno slot
+		Arrays.fill(active, true);
+		Arrays.fill(size, 1);
+		for (int i = 0; i < n; i++) {
+			node[i] = i;
+		}
+		height = new double[n - 1];
+		low = new int[n - 1];
+		high = new int[n - 1];
+		int[] mergedSize = new int[n - 1];
+
+		int[] chain = new int[n];
+		int top = 0;
+		int merged = 0;
+		int first = 0; // primo slot ancora attivo
+
+		while (merged < n - 1) {
+			if (top == 0) {
+				while (!active[first]) {
+					first++;
+				}
+				chain[top++] = first;
+			}
+			int a = chain[top - 1];
+			int prev = top >= 2 ? chain[top - 2] : -1;
+
+			// Vicino più prossimo di a; a parità di distanza quello che precede gli altri nella ricerca esaustiva
+			int b = -1;
+			double best = Double.POSITIVE_INFINITY;
+			for (int s = 0; s < n; s++) {
+				if (active[s] && s != a) {
+					double d = matrix.get(a, s);
+					if (b < 0 || d < best || (d == best && compare(node[s], node[b]) < 0)) {
+						best = d;
+						b = s;
+					}
+				}
+			}
+
+			if (b != prev) {
+				chain[top++] = b;
+				continue;
+			}
+
+			// a e prev sono reciprocamente i più vicini: vengono fusi nello slot minore
+			top -= 2;
+			int keep = Math.min(a, b);
+			int drop = Math.max(a, b);
+			for (int s = 0; s < n; s++) {
+				if (active[s] && s != keep && s != drop) {
+					matrix.set(keep, s, linkage.update(matrix.get(keep, s), matrix.get(drop, s), best, size[keep], size[drop], size[s]));
+				}
+			}
+			boolean keepFirst = compare(node[keep], node[drop]) < 0;
+			low[merged] = keepFirst ? node[keep] : node[drop];
+			high[merged] = keepFirst ? node[drop] : node[keep];
+			height[merged] = best;
+			active[drop] = false;
+			size[keep] += size[drop];
+			mergedSize[merged] = size[keep];
+			node[keep] = n + merged;
+			merged++;
+		}
+		return mergedSize;
+	}
+
+	/**
+	 * Confronta due nodi distinti secondo l'ordine dei loro identificativi nella ricerca esaustiva:
+	 * gli esempi vengono prima dei cluster fusi, e due cluster fusi sono ordinati per distanza di fusione
+	 * e, alla stessa distanza, per il primo dei rispettivi cluster fusi.
+	 *
+	 * @param x Primo nodo.
+	 * @param y Secondo nodo.
+	 * @return Un valore negativo se {@code x} viene prima di {@code y}, positivo se viene dopo, 0 se coincidono.
+	 */
+	private int compare(int x, int y) {
+		while (x != y) {
+			if (x < n || y < n) {
+				return x < n && y < n ? Integer.compare(x, y) : (x < n ? -1 : 1);
+			}
+			int c = Double.compare(height[x - n], height[y - n]);
+			if (c != 0) {
+				return c;
+			}
+			// Due nodi distinti hanno primi figli distinti, per cui il confronto termina sugli esempi
+			x = low[x - n];
+			y = low[y - n];
+		}
+		return 0;
+	}
+
+	/**
+	 * Ordina le fusioni come le esegue la ricerca esaustiva, cioè secondo l'ordine dei cluster che creano,
+	 * e assegna gli identificativi dei cluster; ogni cluster fuso viene prima del cluster che lo contiene,
+	 * per cui i suoi identificativi sono già assegnati quando serve.
+	 *
+	 * @param size Dimensione del cluster creato da ciascuna fusione.
+	 * @param maxMerges Numero di fusioni da restituire.
+	 * @return La sequenza ordinata delle prime {@code maxMerges} fusioni.
+	 */
+	private LinkageMatrix sortMerges(int[] size, int maxMerges) {
+		Integer[] sorted = new Integer[n - 1];
+		for (int m = 0; m < n - 1; m++) {
+			sorted[m] = m;
+		}
+		Arrays.sort(sorted, (m1, m2) -> compare(n + m1, n + m2));
+
+		int[] id = new int[2 * n - 1]; // identificativo del cluster di ciascun nodo
+		for (int i = 0; i < n; i++) {
+			id[i] = i;
+		}
+		LinkageMatrix merges = new LinkageMatrix(n, maxMerges);
+		for (int r = 0; r < maxMerges; r++) {
+			int m = sorted[r];
+			id[n + m] = merges.add(id[low[m]], id[high[m]], height[m], size[m]);
+		}
+		return merges;
+	}
+}
@@ -0,0 +1,168 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Motore di clustering dedicato alla distanza Single Link, basato sull'algoritmo di Prim
+ * sul grafo completo implicito degli esempi.
+ *
+ * A ogni passo l'esempio aggiunto all'albero aggiorna la distanza dall'albero di tutti gli esempi
+ * ancora esclusi e viene scelto il più vicino: O(n^2) tempo e O(n) memoria, senza matrice delle distanze.
+ * A differenza di SLINK, il ciclo interno è indipendente per ciascun esempio e viene diviso in blocchi
+ * sui thread del pool; la scelta del più vicino è ridotta nell'ordine dei blocchi, per cui l'albero
+ * non dipende dal numero di thread. Il minimo albero ricoprente viene ordinato, conservato nel
+ * dendrogramma e convertito nella sequenza di fusioni da {@link SpanningTreeMerger}.
+ */
+class PrimEngine implements MiningEngine {
+	/** Numero minimo di valori letti per cui conviene assegnare un blocco di esempi a un thread. */
+	private static final int BLOCK_WORK = 1 << 15;
+
+	/** Pool su cui eseguire i blocchi, oppure {@code null} per l'esecuzione sequenziale. */
+	private final ForkJoinPool pool;
+
+	/** Dataset su cui è eseguito il clustering. */
+	private Data data;
+	/** Esempi non ancora nell'albero, nelle prime {@code r} posizioni. */
+	private int[] remaining;
+	/** Numero di esempi non ancora nell'albero. */
+	private int r;
+	/** Distanza di ciascun esempio dall'albero. */
+	private double[] nearestDistance;
+	/** Esempio dell'albero più vicino a ciascun esempio. */
+	private int[] nearest;
+	/** Ultimo esempio aggiunto all'albero. */
+	private int current;
+	/** Numero di posizioni di {@code remaining} assegnate a ciascun blocco. */
+	private int grain;
+	/** Posizione in {@code remaining} dell'esempio più vicino all'albero di ciascun blocco. */
+	private int[] blockBest;
+
+	/**
+	 * Costruisce il motore sul pool specificato.
+	 *
+	 * @param pool Pool dedicato al clustering, oppure {@code null} per l'esecuzione sequenziale.
+	 */
+	PrimEngine(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Costruisce il minimo albero ricoprente e da esso i livelli del dendrogramma.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster (Single Link).
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	@Override
+	public void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException {
+		int n = data.getNumberOfExample();
+		if (n <= 1) {
+			throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
+		}
+
+		this.data = data;
+		this.remaining = new int[n - 1];
+		this.nearestDistance = new double[n];
+		this.nearest = new int[n];
+		for (int i = 1; i < n; i++) {
+			remaining[i - 1] = i;
+		}
+		Arrays.fill(nearestDistance, Double.POSITIVE_INFINITY);
+		this.grain = Math.max(64, BLOCK_WORK / Math.max(1, data.getNumberOfAttributes()));
+		this.blockBest = new int[(n + grain - 1) / grain];
+
+		int[] from = new int[n - 1];
+		int[] to = new int[n - 1];
+		double[] weight = new double[n - 1];
+		current = 0;
+		for (int e = 0; e < n - 1; e++) {
+			r = n - 1 - e;
+
+			// Aggiorna le distanze dall'albero e trova il più vicino di ciascun blocco
+			int blocks = (r + grain - 1) / grain;
+			if (pool == null || blocks == 1) {
+				scan(0, blocks);
+			} else {
+				pool.invoke(new Update(0, blocks));
+			}
+
+			// Riduzione deterministica nell'ordine dei blocchi
+			int best = blockBest[0];
+			for (int b = 1; b < blocks; b++) {
+				if (nearestDistance[remaining[blockBest[b]]] < nearestDistance[remaining[best]]) {
+					best = blockBest[b];
+				}
+			}
+
+			int v = remaining[best];
+			from[e] = nearest[v];
+			to[e] = v;
+			weight[e] = nearestDistance[v];
+			remaining[best] = remaining[r - 1];
+			current = v;
+		}
+
+		SpanningTree tree = new SpanningTree(n, from, to, weight);
+		dendrogram.setSpanningTree(tree);
+		dendrogram.setMerges(tree.merges(dendrogram.getDepth() - 1, data));
+	}
+
+	/**
+	 * Aggiorna la distanza dall'albero degli esempi dei blocchi {@code lo..hi-1} rispetto all'ultimo esempio
+	 * aggiunto e registra per ciascun blocco la posizione del più vicino, a parità di distanza il primo.
+	 *
+	 * @param lo Primo blocco.
+	 * @param hi Primo blocco escluso.
+	 */
+	private void scan(int lo, int hi) {
+		for (int b = lo; b < hi; b++) {
+			int end = Math.min(r, (b + 1) * grain);
+			int best = b * grain;
+			for (int p = b * grain; p < end; p++) {
+				int v = remaining[p];
+				double d = data.distance(current, v);
+				if (d < nearestDistance[v]) {
+					nearestDistance[v] = d;
+					nearest[v] = current;
+				}
+				if (nearestDistance[v] < nearestDistance[remaining[best]]) {
+					best = p;
+				}
+			}
+			blockBest[b] = best;
+		}
+	}
+
+	/**
+	 * Intervallo di blocchi, diviso a metà finché ne contiene più di uno.
+	 */
+	private class Update extends RecursiveAction {
+		/** Versione fissa, dato che {@link RecursiveAction} è serializzabile; un aggiornamento vive solo durante il clustering. */
+		private static final long serialVersionUID = 1L;
+		private final int lo;
+		private final int hi;
+
+		Update(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= 1) {
+				scan(lo, hi);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Update(lo, mid), new Update(mid, hi));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+import distance.ClusterDistance;
+
+/**
+ * Motore di clustering dedicato alla distanza Single Link, basato sull'algoritmo SLINK di Sibson.
+ *
+ * SLINK costruisce la "pointer representation" del dendrogramma: per ogni esempio {@code i}
+ * memorizza l'esempio {@code pi[i]} con cui viene fuso e la distanza {@code lambda[i]} della fusione.
+ * Richiede O(n^2) tempo e solo O(n) memoria aggiuntiva: le distanze tra esempi vengono calcolate
+ * al volo, una riga alla volta, senza matrice delle distanze né ClusterSet intermedi.
+ * Gli archi della rappresentazione formano un albero di copertura, che viene conservato nel dendrogramma
+ * e convertito nella sequenza di fusioni da {@link SpanningTreeMerger}.
+ */
+class SlinkEngine implements MiningEngine {
+
+	/**
+	 * Costruisce i livelli del dendrogramma con l'algoritmo SLINK.
+	 *
+	 * @param dendrogram Dendrogramma da completare, con il livello 0 già impostato.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param distance Metrica per il calcolo della distanza tra i cluster (Single Link).
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 * @throws InvalidClustersNumberException Se non ci sono abbastanza cluster da fondere.
+	 */
+	@Override
+	public void mine(Dendrogram dendrogram, Data data, ClusterDistance distance) throws InvalidSizeException, InvalidClustersNumberException {
+		int n = data.getNumberOfExample();
+		if (n <= 1) {
+			throw new InvalidClustersNumberException("Non ci sono abbastanza cluster da fondere");
+		}
+
+		int[] pi = new int[n];
+		double[] lambda = new double[n];
+		double[] m = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			pi[i] = i;
+			lambda[i] = Double.POSITIVE_INFINITY;
+			for (int j = 0; j < i; j++) {
+				m[j] = data.distance(j, i);
+			}
+
+			for (int j = 0; j < i; j++) {
+				if (lambda[j] >= m[j]) {
+					m[pi[j]] = Math.min(m[pi[j]], lambda[j]);
+					lambda[j] = m[j];
+					pi[j] = i;
+				} else {
+					m[pi[j]] = Math.min(m[pi[j]], m[j]);
+				}
+			}
+
+			for (int j = 0; j < i; j++) {
+				if (lambda[j] >= lambda[pi[j]]) {
+					pi[j] = i;
+				}
+			}
+		}
+
+		// Ogni esempio tranne l'ultimo definisce un arco (j, pi[j]) di peso lambda[j]
+		int[] from = new int[n - 1];
+		for (int j = 0; j < n - 1; j++) {
+			from[j] = j;
+		}
+		SpanningTree tree = new SpanningTree(n, from, pi, lambda);
+		dendrogram.setSpanningTree(tree);
+		dendrogram.setMerges(tree.merges(dendrogram.getDepth() - 1, data));
+	}
+}
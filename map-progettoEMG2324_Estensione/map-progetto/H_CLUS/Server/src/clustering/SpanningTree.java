@@ -0,0 +1,80 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Albero di copertura degli esempi da cui si ricava l'intera gerarchia Single Link.
+ *
+ * Gli {@code n-1} archi sono memorizzati già ordinati per distanza crescente, così che la sequenza
+ * delle fusioni per una profondità qualsiasi si ottenga con una sola passata union-find di
+ * {@link SpanningTreeMerger}, in O(n) a meno dei gruppi di archi con la stessa distanza,
+ * senza ripetere il clustering. L'albero viene salvato insieme al dendrogramma.
+ *
+ * Implementa {@link Serializable} per essere salvato insieme al dendrogramma.
+ */
+class SpanningTree implements Serializable {
+	/** Versione della forma serializzata dell'albero di copertura, fissata al valore dei modelli che già lo contengono. */
+	private static final long serialVersionUID = -9203939220641209102L;
+	/** Numero di esempi del dataset. */
+	private final int n;
+	/** Primo estremo di ciascun arco. */
+	private final int[] from;
+	/** Secondo estremo di ciascun arco. */
+	private final int[] to;
+	/** Distanza associata a ciascun arco, in ordine crescente. */
+	private final double[] weight;
+
+	/**
+	 * Costruisce l'albero a partire dai suoi archi, in un ordine qualsiasi; a parità di distanza
+	 * gli archi mantengono l'ordine in cui sono stati forniti.
+	 *
+	 * @param n Numero di esempi del dataset.
+	 * @param from Primo estremo di ciascun arco.
+	 * @param to Secondo estremo di ciascun arco.
+	 * @param weight Distanza associata a ciascun arco.
+	 */
+	SpanningTree(int n, int[] from, int[] to, double[] weight) {
+		int edges = n - 1;
+		Integer[] sorted = new Integer[edges];
+		for (int e = 0; e < edges; e++) {
+			sorted[e] = e;
+		}
+		Arrays.sort(sorted, (e1, e2) -> Double.compare(weight[e1], weight[e2]));
+
+		this.n = n;
+		this.from = new int[edges];
+		this.to = new int[edges];
+		this.weight = new double[edges];
+		for (int e = 0; e < edges; e++) {
+			this.from[e] = from[sorted[e]];
+			this.to[e] = to[sorted[e]];
+			this.weight[e] = weight[sorted[e]];
+		}
+	}
+
+	/**
+	 * Restituisce il numero di esempi coperti dall'albero.
+	 *
+	 * @return Numero di esempi.
+	 */
+	int getNumberOfExamples() {
+		return n;
+	}
+
+	/**
+	 * Calcola la sequenza delle prime {@code maxMerges} fusioni Single Link.
+	 *
+	 * @param maxMerges Numero di fusioni da produrre, al più {@code n-1}.
+	 * @param data Dataset su cui è stato costruito l'albero, usato per risolvere le parità.
+	 * @return La sequenza di fusioni.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	LinkageMatrix merges(int maxMerges, Data data) throws InvalidSizeException {
+		// Gli archi sono già ordinati: l'ordinamento stabile di SpanningTreeMerger li scorre in tempo lineare
+		return SpanningTreeMerger.merge(from, to, weight, n - 1, maxMerges, data);
+	}
+}
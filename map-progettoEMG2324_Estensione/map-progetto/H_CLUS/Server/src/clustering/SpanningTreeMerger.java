@@ -0,0 +1,285 @@
+package clustering;
+
+import data.Data;
+import data.InvalidSizeException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Converte un albero di copertura degli esempi nella sequenza di fusioni Single Link.
+ *
+ * Gli archi dell'albero (prodotti per esempio da SLINK o da un minimo albero ricoprente) vengono
+ * ordinati per distanza crescente e fusi tramite union-find: fino a ogni soglia {@code h} gli archi
+ * di peso non superiore a {@code h} individuano esattamente i cluster Single Link.
+ *
+ * Quando più archi hanno la stessa distanza, l'albero da solo non basta a stabilire quale coppia
+ * la ricerca esaustiva descritta in {@link MiningEngine} fonderebbe per prima. In questo
+ * caso si ricostruisce, solo tra i cluster coinvolti, il grafo delle coppie che distano esattamente
+ * {@code h} e si fonde ogni volta la prima coppia nell'ordine del ClusterSet, così che i livelli
+ * prodotti coincidano con quelli della ricerca esaustiva anche in caso di parità.
+ */
+class SpanningTreeMerger {
+	/** Dataset su cui è eseguito il clustering. */
+	private final Data data;
+	/** Numero di esempi del dataset. */
+	private final int n;
+	/** Padre di ciascun esempio nella struttura union-find. */
+	private final int[] parent;
+	/** Identificativo del cluster rappresentato da ciascuna radice della struttura union-find. */
+	private final int[] clusterOf;
+	/** Radice della struttura union-find di ciascun cluster, indicizzata per identificativo. */
+	private final int[] rootOf;
+	/** Primo esempio della lista dei membri di ciascuna radice. */
+	private final int[] head;
+	/** Ultimo esempio della lista dei membri di ciascuna radice. */
+	private final int[] tail;
+	/** Esempio successivo nella lista dei membri. */
+	private final int[] next;
+	/** Dimensione del cluster di ciascuna radice. */
+	private final int[] size;
+	/** Sequenza di fusioni prodotta. */
+	private final LinkageMatrix merges;
+
+	/**
+	 * Inizializza la conversione con un cluster per ciascun esempio.
+	 *
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @param maxMerges Numero di fusioni da produrre.
+	 */
+	private SpanningTreeMerger(Data data, int maxMerges) {
+		this.data = data;
+		this.n = data.getNumberOfExample();
+		this.parent = new int[n];
+		this.clusterOf = new int[n];
+		this.rootOf = new int[n + maxMerges];
+		this.head = new int[n];
+		this.tail = new int[n];
+		this.next = new int[n];
+		this.size = new int[n];
+		this.merges = new LinkageMatrix(n, maxMerges);
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			clusterOf[i] = i;
+			rootOf[i] = i;
+			head[i] = i;
+			tail[i] = i;
+			next[i] = -1;
+			size[i] = 1;
+		}
+	}
+
+	/**
+	 * Calcola la sequenza delle prime {@code maxMerges} fusioni Single Link a partire da un albero di copertura.
+	 *
+	 * @param from Primo estremo di ciascun arco.
+	 * @param to Secondo estremo di ciascun arco.
+	 * @param weight Distanza associata a ciascun arco.
+	 * @param edges Numero di archi validi negli array.
+	 * @param maxMerges Numero di fusioni da produrre, al più {@code edges}.
+	 * @param data Dataset su cui è eseguito il clustering.
+	 * @return La sequenza di fusioni.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	static LinkageMatrix merge(int[] from, int[] to, double[] weight, int edges, int maxMerges, Data data) throws InvalidSizeException {
+		Integer[] sorted = new Integer[edges];
+		for (int e = 0; e < edges; e++) {
+			sorted[e] = e;
+		}
+		Arrays.sort(sorted, (e1, e2) -> Double.compare(weight[e1], weight[e2]));
+
+		SpanningTreeMerger merger = new SpanningTreeMerger(data, maxMerges);
+		int start = 0;
+		while (start < edges && merger.merges.getLength() < maxMerges) {
+			int end = start + 1;
+			while (end < edges && weight[sorted[end]] == weight[sorted[start]]) {
+				end++;
+			}
+
+			if (end - start == 1) {
+				// Un solo arco alla distanza h: la fusione è univoca
+				int e = sorted[start];
+				merger.union(merger.find(from[e]), merger.find(to[e]), weight[e]);
+			} else {
+				merger.mergeTies(sorted, start, end, from, to, weight[sorted[start]], maxMerges);
+			}
+			start = end;
+		}
+		return merger.merges;
+	}
+
+	/**
+	 * Esegue le fusioni di un gruppo di archi con la stessa distanza {@code h}, nell'ordine in cui
+	 * le eseguirebbe la ricerca esaustiva.
+	 *
+	 * @param sorted Archi ordinati per distanza.
+	 * @param start Primo arco del gruppo.
+	 * @param end Primo arco successivo al gruppo.
+	 * @param from Primo estremo di ciascun arco.
+	 * @param to Secondo estremo di ciascun arco.
+	 * @param h Distanza comune agli archi del gruppo.
+	 * @param maxMerges Numero di fusioni da produrre.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	private void mergeTies(Integer[] sorted, int start, int end, int[] from, int[] to, double h, int maxMerges) throws InvalidSizeException {
+		// Raggruppa i cluster coinvolti nelle componenti che il gruppo di archi andrà a formare
+		Map<Integer, Integer> component = new HashMap<>();
+		for (int g = start; g < end; g++) {
+			int e = sorted[g];
+			int r1 = clusterOf[find(from[e])];
+			int r2 = clusterOf[find(to[e])];
+			component.putIfAbsent(r1, r1);
+			component.putIfAbsent(r2, r2);
+			int c1 = findComponent(component, r1);
+			int c2 = findComponent(component, r2);
+			if (c1 != c2) {
+				component.put(Math.max(c1, c2), Math.min(c1, c2));
+			}
+		}
+		Map<Integer, List<Integer>> groups = new HashMap<>();
+		for (Integer id : component.keySet()) {
+			groups.computeIfAbsent(findComponent(component, id), k -> new ArrayList<>()).add(id);
+		}
+
+		// Grafo delle coppie di cluster a distanza esattamente h, con archi ordinati come nel ClusterSet
+		Map<Integer, Set<Integer>> adjacent = new HashMap<>();
+		TreeSet<Long> candidates = new TreeSet<>();
+		for (List<Integer> group : groups.values()) {
+			for (int x = 0; x < group.size(); x++) {
+				for (int y = x + 1; y < group.size(); y++) {
+					int c1 = group.get(x);
+					int c2 = group.get(y);
+					if (linkedAt(rootOf[c1], rootOf[c2], h)) {
+						adjacent.computeIfAbsent(c1, k -> new TreeSet<>()).add(c2);
+						adjacent.computeIfAbsent(c2, k -> new TreeSet<>()).add(c1);
+						candidates.add(pair(c1, c2));
+					}
+				}
+			}
+		}
+
+		// Fonde sempre la prima coppia nell'ordine del ClusterSet, ovvero quella con identificativi minimi
+		while (!candidates.isEmpty() && merges.getLength() < maxMerges) {
+			long first = candidates.pollFirst();
+			int c1 = (int) (first >>> 32);
+			int c2 = (int) first;
+			Set<Integer> neighbours = new TreeSet<>(adjacent.remove(c1));
+			neighbours.addAll(adjacent.remove(c2));
+			neighbours.remove(c1);
+			neighbours.remove(c2);
+
+			int merged = union(rootOf[c1], rootOf[c2], h);
+			for (Integer w : neighbours) {
+				Set<Integer> adj = adjacent.get(w);
+				if (adj.remove(c1)) {
+					candidates.remove(pair(w, c1));
+				}
+				if (adj.remove(c2)) {
+					candidates.remove(pair(w, c2));
+				}
+				adj.add(merged);
+				candidates.add(pair(w, merged));
+			}
+			adjacent.put(merged, neighbours);
+		}
+
+		// Salvaguardia: gli archi del gruppo non ancora fusi vengono applicati nell'ordine dato
+		for (int g = start; g < end && merges.getLength() < maxMerges; g++) {
+			int e = sorted[g];
+			int r1 = find(from[e]);
+			int r2 = find(to[e]);
+			if (r1 != r2) {
+				union(r1, r2, h);
+			}
+		}
+	}
+
+	/**
+	 * Verifica se due cluster contengono una coppia di esempi a distanza esattamente {@code h}.
+	 *
+	 * @param r1 Radice del primo cluster.
+	 * @param r2 Radice del secondo cluster.
+	 * @param h Distanza da verificare.
+	 * @return {@code true} se esiste una coppia di esempi a distanza {@code h}.
+	 * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+	 */
+	private boolean linkedAt(int r1, int r2, double h) throws InvalidSizeException {
+		for (int i = head[r1]; i != -1; i = next[i]) {
+			for (int j = head[r2]; j != -1; j = next[j]) {
+				if (data.distance(i, j) == h) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fonde i cluster di due radici e registra la fusione.
+	 *
+	 * @param r1 Radice del primo cluster.
+	 * @param r2 Radice del secondo cluster.
+	 * @param h Distanza alla quale avviene la fusione.
+	 * @return Identificativo del cluster risultante.
+	 */
+	private int union(int r1, int r2, double h) {
+		int id = merges.add(clusterOf[r1], clusterOf[r2], h, size[r1] + size[r2]);
+		if (size[r1] < size[r2]) {
+			int t = r1;
+			r1 = r2;
+			r2 = t;
+		}
+		parent[r2] = r1;
+		size[r1] += size[r2];
+		next[tail[r1]] = head[r2];
+		tail[r1] = tail[r2];
+		clusterOf[r1] = id;
+		rootOf[id] = r1;
+		return id;
+	}
+
+	/**
+	 * Restituisce la radice della struttura union-find che contiene l'esempio indicato.
+	 *
+	 * @param i Indice dell'esempio.
+	 * @return Radice del cluster dell'esempio.
+	 */
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Restituisce il rappresentante della componente di un cluster all'interno di un gruppo di archi.
+	 *
+	 * @param component Padre di ciascun cluster coinvolto nel gruppo.
+	 * @param id Identificativo del cluster.
+	 * @return Rappresentante della componente.
+	 */
+	private static int findComponent(Map<Integer, Integer> component, int id) {
+		int p;
+		while ((p = component.get(id)) != id) {
+			id = p;
+		}
+		return id;
+	}
+
+	/**
+	 * Codifica una coppia di identificativi in modo che l'ordinamento naturale segua l'ordine del ClusterSet.
+	 *
+	 * @param a Identificativo di un cluster.
+	 * @param b Identificativo dell'altro cluster.
+	 * @return Coppia codificata, con l'identificativo minore nei bit più significativi.
+	 */
+	private static long pair(int a, int b) {
+		return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+	}
+}
@@ -3,19 +3,38 @@ package data;
 import database.*;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
- * La classe Data rappresenta un dataset come una lista di oggetti {@link Example}.
+ * La classe Data rappresenta un dataset di esempi numerici.
  * I dati possono essere inizializzati leggendo da una tabella specificata in un database.
+ *
+ * Gli esempi sono memorizzati per righe in un unico blocco contiguo di {@code double}
+ * di lunghezza {@code n*d}, insieme alla norma al quadrato di ciascuna riga.
+ * Il package {@code distance} accede ai valori tramite indici, senza creare oggetti intermedi,
+ * mentre {@link #getExample(int)} restituisce una vista in sola lettura creata al momento.
+ *
+ * Con {@link #toSinglePrecision()} si ottiene una copia del dataset memorizzata in {@code float},
+ * che occupa metà della memoria: i valori sono arrotondati alla singola precisione, mentre norme
+ * e distanze sono calcolate in {@code double} con somme compensate (Kahan), così che non dipendano
+ * dall'ordine degli attributi. A parità di distanza, dovuta all'arrotondamento, la coppia di cluster
+ * fusa può essere diversa da quella del dataset in doppia precisione.
  */
 public class Data {
     /**
-     * Lista di esempi che costituisce il dataset.
+     * Valori degli esempi, memorizzati per righe: l'attributo {@code j} dell'esempio {@code i}
+     * si trova in posizione {@code i*d + j}.
      */
-    private final List<Example> data = new ArrayList<>(); // rappresenta il dataset
+    private double[] data; // rappresenta il dataset
+    /** Valori degli esempi in singola precisione, con la stessa disposizione di {@code data}, oppure {@code null}. */
+    private float[] singleData;
+    /** Norma euclidea al quadrato di ciascun esempio. */
+    private double[] norms;
+    /** Numero di esempi del dataset. */
+    private int n;
+    /** Numero di attributi di ciascun esempio. */
+    private int d;
 
     /**
      * Costruisce un oggetto Data inizializzando il dataset con i dati prelevati da una tabella del database.
@@ -27,8 +46,7 @@ public class Data {
         DbAccess dbAccess = new DbAccess();
         try {
             TableData tableData = new TableData(dbAccess);
-            List<Example> examples = tableData.getDistinctTransazioni(tableName);
-            this.data.addAll(examples);
+            store(tableData.getDistinctValues(tableName));
         } catch (DatabaseConnectionException e) {
             throw new NoDataException("Errore di connessione al database: " + e.getMessage() + "\n");
         } catch (EmptySetException e) {
@@ -40,32 +58,240 @@ public class Data {
         }
     }
 
+    /**
+     * Restituisce la versione del contenuto di una tabella del database, che cambia quando la tabella viene modificata.
+     * Due caricamenti della stessa tabella con la stessa versione producono lo stesso dataset.
+     * Non trasferisce righe, ma il server del database legge l'intera tabella per calcolarla.
+     *
+     * @param tableName Nome della tabella.
+     * @return La versione della tabella.
+     * @throws NoDataException Se la tabella non esiste o si verifica un errore durante l'accesso al database.
+     */
+    public static long getTableVersion(String tableName) throws NoDataException {
+        try {
+            return new TableData(new DbAccess()).getChecksum(tableName);
+        } catch (DatabaseConnectionException e) {
+            throw new NoDataException("Errore di connessione al database: " + e.getMessage() + "\n");
+        } catch (SQLException e) {
+            throw new NoDataException("Errore SQL durante il recupero dei dati dalla tabella. \n");
+        }
+    }
+
+    /**
+     * Costruisce un dataset in singola precisione a partire dai suoi valori.
+     *
+     * @param singleData Valori degli esempi memorizzati per righe.
+     * @param n Numero di esempi.
+     * @param d Numero di attributi di ciascun esempio.
+     */
+    private Data(float[] singleData, int n, int d) {
+        this.singleData = singleData;
+        this.n = n;
+        this.d = d;
+        this.norms = new double[n];
+        for (int i = 0; i < n; i++) {
+            double norm = 0.0;
+            double compensation = 0.0;
+            for (int j = 0; j < d; j++) {
+                double v = singleData[i * d + j];
+                double y = v * v - compensation;
+                double t = norm + y;
+                compensation = (t - norm) - y;
+                norm = t;
+            }
+            norms[i] = norm;
+        }
+    }
+
+    /**
+     * Adotta come blocco contiguo i valori letti dalla tabella, senza copiarli, e ne calcola le norme.
+     *
+     * @param values Valori delle righe distinte della tabella.
+     */
+    private void store(TableData.Values values) {
+        this.n = values.getNumberOfRows();
+        this.d = values.getNumberOfColumns();
+        this.data = values.getValues();
+        this.norms = new double[n];
+        for (int i = 0; i < n; i++) {
+            double norm = 0.0;
+            for (int j = 0; j < d; j++) {
+                double v = data[i * d + j];
+                norm += v * v;
+            }
+            norms[i] = norm;
+        }
+    }
+
+    /**
+     * Restituisce una copia del dataset con i valori memorizzati in singola precisione.
+     *
+     * @return Il dataset in singola precisione, oppure questo stesso dataset se lo è già.
+     */
+    public Data toSinglePrecision() {
+        if (singleData != null) {
+            return this;
+        }
+        float[] values = new float[data.length];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = (float) data[k];
+        }
+        return new Data(values, n, d);
+    }
+
+    /**
+     * Indica se i valori del dataset sono memorizzati in singola precisione.
+     *
+     * @return {@code true} se il dataset è stato ottenuto con {@link #toSinglePrecision()}.
+     */
+    public boolean isSinglePrecision() {
+        return singleData != null;
+    }
+
     /**
      * Restituisce il numero di esempi presenti nel dataset.
      *
      * @return Numero di esempi nel dataset.
      */
     public int getNumberOfExample() {
-        return data.size();
+        return n;
+    }
+
+    /**
+     * Restituisce il numero di attributi di ciascun esempio.
+     *
+     * @return Numero di attributi.
+     */
+    public int getNumberOfAttributes() {
+        return d;
+    }
+
+    /**
+     * Restituisce una stima della memoria occupata dai valori e dalle norme del dataset.
+     *
+     * @return Numero di byte occupati dagli array del dataset.
+     */
+    public long getSizeInBytes() {
+        long values = data != null ? (long) data.length * Double.BYTES : (long) singleData.length * Float.BYTES;
+        return values + (long) norms.length * Double.BYTES;
+    }
+
+    /**
+     * Restituisce il valore di un attributo di un esempio.
+     *
+     * @param exampleIndex Indice dell'esempio.
+     * @param attributeIndex Indice dell'attributo.
+     * @return Il valore dell'attributo.
+     */
+    public double getValue(int exampleIndex, int attributeIndex) {
+        if (singleData != null) {
+            return singleData[exampleIndex * d + attributeIndex];
+        }
+        return data[exampleIndex * d + attributeIndex];
+    }
+
+    /**
+     * Calcola la distanza tra due esempi del dataset, con lo stesso risultato di {@link Example#distance(Example)}
+     * ma leggendo i valori direttamente dal blocco contiguo.
+     *
+     * @param i Indice del primo esempio.
+     * @param j Indice del secondo esempio.
+     * @return La somma dei quadrati delle differenze tra i due esempi.
+     */
+    public double distance(int i, int j) {
+        if (singleData != null) {
+            return DistanceKernel.INSTANCE.distance(singleData, i * d, singleData, j * d, d);
+        }
+        return DistanceKernel.INSTANCE.distance(data, i * d, data, j * d, d);
+    }
+
+    /**
+     * Calcola le distanze di un esempio da un intervallo di esempi consecutivi del dataset,
+     * scorrendo il blocco contiguo una sola volta.
+     *
+     * @param i Indice dell'esempio di riferimento.
+     * @param from Indice del primo esempio dell'intervallo.
+     * @param to Indice del primo esempio escluso dall'intervallo.
+     * @param out Array in cui scrivere le distanze, nello stesso ordine degli esempi.
+     * @param outOffset Posizione in {@code out} della distanza dall'esempio {@code from}.
+     */
+    public void distances(int i, int from, int to, double[] out, int outOffset) {
+        if (singleData != null) {
+            DistanceKernel.INSTANCE.distances(singleData, i * d, singleData, from, to, d, out, outOffset);
+            return;
+        }
+        DistanceKernel.INSTANCE.distances(data, i * d, data, from, to, d, out, outOffset);
+    }
+
+    /**
+     * Calcola le distanze tra ogni esempio di un intervallo e ogni esempio di un secondo intervallo,
+     * a blocchi come un prodotto tra matrici, a partire dalle norme calcolate alla costruzione del dataset
+     * (vedi {@link DistanceKernel#block}). Per i dataset in singola precisione le distanze sono calcolate
+     * una coppia alla volta con le somme compensate.
+     *
+     * @param rowFrom Indice del primo esempio del primo intervallo.
+     * @param rowTo Indice del primo esempio escluso dal primo intervallo.
+     * @param colFrom Indice del primo esempio del secondo intervallo.
+     * @param colTo Indice del primo esempio escluso dal secondo intervallo.
+     * @param out Array in cui scrivere le distanze per righe: la distanza tra gli esempi {@code i} e {@code j}
+     * si trova in posizione {@code (i-rowFrom)*(colTo-colFrom) + (j-colFrom)}.
+     */
+    public void distanceBlock(int rowFrom, int rowTo, int colFrom, int colTo, double[] out) {
+        if (singleData != null) {
+            for (int i = rowFrom; i < rowTo; i++) {
+                distances(i, colFrom, colTo, out, (i - rowFrom) * (colTo - colFrom));
+            }
+            return;
+        }
+        DistanceKernel.INSTANCE.block(data, norms, d, rowFrom, rowTo, colFrom, colTo, out);
     }
 
     /**
      * Restituisce un esempio specifico dal dataset dato un indice.
+     * L'esempio è una vista in sola lettura sulla riga del dataset, creata a ogni invocazione;
+     * per i dataset in singola precisione è invece una copia della riga in {@code double}, in cui ogni valore
+     * è il decimale più breve che identifica il {@code float} memorizzato, così che i valori letti dal database
+     * con poche cifre vengano mostrati come nella tabella.
      *
      * @param exampleIndex Indice dell'esempio da recuperare.
      * @return L'oggetto {@link Example} corrispondente all'indice specificato.
      */
     public Example getExample(int exampleIndex) {
-        return data.get(exampleIndex);
+        if (exampleIndex < 0 || exampleIndex >= n) {
+            throw new IndexOutOfBoundsException("Indice " + exampleIndex + " fuori dal dataset di " + n + " esempi");
+        }
+        if (singleData != null) {
+            double[] values = new double[d];
+            for (int j = 0; j < d; j++) {
+                values[j] = Double.parseDouble(Float.toString(singleData[exampleIndex * d + j]));
+            }
+            return new Example(values);
+        }
+        return new Example(data, exampleIndex * d, d);
     }
 
     /**
      * Restituisce un iteratore per scorrere gli esempi contenuti nel dataset.
      *
-     * @return Un iteratore sugli elementi della lista {@code data}.
+     * @return Un iteratore sulle viste degli esempi del dataset.
      */
     public Iterator<Example> iterator() {
-        return data.iterator();
+        return new Iterator<Example>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < n;
+            }
+
+            @Override
+            public Example next() {
+                if (i >= n) {
+                    throw new NoSuchElementException();
+                }
+                return getExample(i++);
+            }
+        };
     }
 
     /**
@@ -86,4 +312,3 @@ public class Data {
         return s.toString();
     }
 }
-
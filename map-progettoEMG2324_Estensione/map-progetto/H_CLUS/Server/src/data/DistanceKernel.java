@@ -0,0 +1,257 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Kernel per il calcolo della distanza euclidea al quadrato tra vettori memorizzati in array di {@code double}.
+ *
+ * Questa implementazione è scalare ed elabora un valore alla volta. All'avvio viene scelto, se disponibile,
+ * il kernel vettoriale {@code VectorDistanceKernel} basato sulla Vector API del JDK, che richiede l'opzione
+ * {@code --add-modules jdk.incubator.vector}; in sua assenza, o se la piattaforma non offre istruzioni SIMD,
+ * si usa questo kernel.
+ * Le distanze tra vettori in singola precisione usano sempre l'implementazione scalare di questa classe,
+ * con somme compensate che non si prestano alla vettorizzazione.
+ *
+ * Per le distanze tra tutte le coppie di due blocchi di righe, {@link #block} usa lo sviluppo
+ * {@code ||x||^2 + ||y||^2 - 2 x·y} come un piccolo prodotto tra matrici: i prodotti scalari sono calcolati
+ * a gruppi di due righe per due colonne, così che ogni valore letto serva due prodotti, e gli attributi
+ * sono divisi in tratti di {@link #DEPTH} valori, così che i tratti delle righe dei due blocchi restino in cache.
+ */
+class DistanceKernel {
+    /** Numero di attributi di ciascun tratto dei blocchi, dimensionato perché due blocchi di 32 righe stiano nella cache L2. */
+    static final int DEPTH = 256;
+    /**
+     * Distanza relativa alla somma delle norme sotto la quale lo sviluppo perde troppe cifre per cancellazione:
+     * le distanze più piccole vengono ricalcolate come somma dei quadrati delle differenze.
+     */
+    private static final double TOLERANCE = 0x1p-12;
+    /** Numero minimo di attributi per cui lo sviluppo conviene rispetto alla somma dei quadrati delle differenze. */
+    static final int MIN_LENGTH = 16;
+
+    /** Kernel utilizzato dal processo, scelto in base alle capacità della piattaforma. */
+    static final DistanceKernel INSTANCE = select();
+
+    /**
+     * Calcola la somma dei quadrati delle differenze tra due vettori memorizzati in array, eventualmente condivisi.
+     *
+     * @param x Array del primo vettore.
+     * @param xOffset Posizione in {@code x} del primo valore.
+     * @param y Array del secondo vettore.
+     * @param yOffset Posizione in {@code y} del primo valore.
+     * @param length Numero di valori di ciascun vettore.
+     * @return La distanza euclidea al quadrato tra i due vettori.
+     */
+    double distance(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            double diff = x[xOffset + i] - y[yOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Calcola la distanza di un vettore da più righe consecutive di un blocco memorizzato per righe.
+     *
+     * @param x Array del vettore.
+     * @param xOffset Posizione in {@code x} del primo valore.
+     * @param block Blocco di righe di lunghezza {@code length}.
+     * @param from Prima riga del blocco.
+     * @param to Prima riga esclusa.
+     * @param length Numero di valori di ciascuna riga.
+     * @param out Array in cui scrivere le distanze.
+     * @param outOffset Posizione in {@code out} della distanza dalla riga {@code from}.
+     */
+    void distances(double[] x, int xOffset, double[] block, int from, int to, int length, double[] out, int outOffset) {
+        for (int r = from; r < to; r++) {
+            out[outOffset++] = distance(x, xOffset, block, r * length, length);
+        }
+    }
+
+    /**
+     * Calcola le distanze tra le righe {@code rowFrom..rowTo-1} e le righe {@code colFrom..colTo-1} di un blocco
+     * memorizzato per righe, a partire dalle norme al quadrato delle righe.
+     * Il risultato può differire da quello di {@link #distance} nelle ultime cifre, mentre le distanze
+     * troppo piccole rispetto alle norme, comprese quelle nulle, sono calcolate direttamente. Con meno di
+     * {@link #MIN_LENGTH} attributi lo sviluppo non riduce il lavoro e tutte le distanze sono calcolate direttamente.
+     *
+     * @param block Blocco di righe di lunghezza {@code length}.
+     * @param norms Norma al quadrato di ciascuna riga.
+     * @param length Numero di valori di ciascuna riga.
+     * @param rowFrom Prima riga del primo blocco.
+     * @param rowTo Prima riga esclusa dal primo blocco.
+     * @param colFrom Prima riga del secondo blocco.
+     * @param colTo Prima riga esclusa dal secondo blocco.
+     * @param out Array in cui scrivere le distanze per righe: la distanza tra le righe {@code i} e {@code j}
+     * si trova in posizione {@code (i-rowFrom)*(colTo-colFrom) + (j-colFrom)}.
+     */
+    void block(double[] block, double[] norms, int length, int rowFrom, int rowTo, int colFrom, int colTo, double[] out) {
+        int cols = colTo - colFrom;
+        if (length < MIN_LENGTH) {
+            for (int i = rowFrom; i < rowTo; i++) {
+                distances(block, i * length, block, colFrom, colTo, length, out, (i - rowFrom) * cols);
+            }
+            return;
+        }
+        Arrays.fill(out, 0, (rowTo - rowFrom) * cols, 0.0);
+        for (int k = 0; k < length; k += DEPTH) {
+            dots(block, length, rowFrom, rowTo, colFrom, colTo, k, Math.min(length, k + DEPTH), out);
+        }
+
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = colFrom; j < colTo; j++) {
+                int p = (i - rowFrom) * cols + (j - colFrom);
+                double sum = norms[i] + norms[j];
+                double dist = sum - 2.0 * out[p];
+                out[p] = dist > TOLERANCE * sum ? dist : distance(block, i * length, block, j * length, length);
+            }
+        }
+    }
+
+    /**
+     * Somma ai valori di {@code out} i prodotti scalari tra le righe dei due blocchi, ristretti agli attributi
+     * {@code from..to-1}, a gruppi di due righe per due colonne.
+     *
+     * @param block Blocco di righe di lunghezza {@code length}.
+     * @param length Numero di valori di ciascuna riga.
+     * @param rowFrom Prima riga del primo blocco.
+     * @param rowTo Prima riga esclusa dal primo blocco.
+     * @param colFrom Prima riga del secondo blocco.
+     * @param colTo Prima riga esclusa dal secondo blocco.
+     * @param from Primo attributo del tratto.
+     * @param to Primo attributo escluso dal tratto.
+     * @param out Prodotti scalari parziali, con la disposizione di {@link #block}.
+     */
+    void dots(double[] block, int length, int rowFrom, int rowTo, int colFrom, int colTo, int from, int to, double[] out) {
+        int cols = colTo - colFrom;
+        int i = rowFrom;
+        for (; i + 1 < rowTo; i += 2) {
+            int x0 = i * length;
+            int x1 = x0 + length;
+            int j = colFrom;
+            for (; j + 1 < colTo; j += 2) {
+                int y0 = j * length;
+                int y1 = y0 + length;
+                double s00 = 0.0;
+                double s01 = 0.0;
+                double s10 = 0.0;
+                double s11 = 0.0;
+                for (int k = from; k < to; k++) {
+                    double a0 = block[x0 + k];
+                    double a1 = block[x1 + k];
+                    double b0 = block[y0 + k];
+                    double b1 = block[y1 + k];
+                    s00 += a0 * b0;
+                    s01 += a0 * b1;
+                    s10 += a1 * b0;
+                    s11 += a1 * b1;
+                }
+                int p = (i - rowFrom) * cols + (j - colFrom);
+                out[p] += s00;
+                out[p + 1] += s01;
+                out[p + cols] += s10;
+                out[p + cols + 1] += s11;
+            }
+            if (j < colTo) {
+                int p = (i - rowFrom) * cols + (j - colFrom);
+                out[p] += dot(block, x0, j * length, from, to);
+                out[p + cols] += dot(block, x1, j * length, from, to);
+            }
+        }
+        if (i < rowTo) {
+            for (int j = colFrom; j < colTo; j++) {
+                out[(i - rowFrom) * cols + (j - colFrom)] += dot(block, i * length, j * length, from, to);
+            }
+        }
+    }
+
+    /**
+     * Calcola il prodotto scalare tra due righe di un blocco, ristretto agli attributi {@code from..to-1}.
+     *
+     * @param block Blocco di righe.
+     * @param x Posizione nel blocco del primo valore della prima riga.
+     * @param y Posizione nel blocco del primo valore della seconda riga.
+     * @param from Primo attributo.
+     * @param to Primo attributo escluso.
+     * @return Il prodotto scalare parziale.
+     */
+    double dot(double[] block, int x, int y, int from, int to) {
+        double sum = 0.0;
+        for (int k = from; k < to; k++) {
+            sum += block[x + k] * block[y + k];
+        }
+        return sum;
+    }
+
+    /**
+     * Calcola la somma dei quadrati delle differenze tra due vettori in singola precisione.
+     * Ogni termine è calcolato in {@code double} e i termini sono sommati con la somma compensata
+     * di Kahan, così che l'errore di arrotondamento non cresca con il numero di attributi.
+     *
+     * @param x Array del primo vettore.
+     * @param xOffset Posizione in {@code x} del primo valore.
+     * @param y Array del secondo vettore.
+     * @param yOffset Posizione in {@code y} del primo valore.
+     * @param length Numero di valori di ciascun vettore.
+     * @return La distanza euclidea al quadrato tra i due vettori.
+     */
+    double distance(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        double sum = 0.0;
+        double compensation = 0.0;
+        for (int i = 0; i < length; i++) {
+            double diff = (double) x[xOffset + i] - y[yOffset + i];
+            double term = diff * diff - compensation;
+            double t = sum + term;
+            compensation = (t - sum) - term;
+            sum = t;
+        }
+        return sum;
+    }
+
+    /**
+     * Calcola la distanza di un vettore in singola precisione da più righe consecutive di un blocco memorizzato per righe.
+     *
+     * @param x Array del vettore.
+     * @param xOffset Posizione in {@code x} del primo valore.
+     * @param block Blocco di righe di lunghezza {@code length}.
+     * @param from Prima riga del blocco.
+     * @param to Prima riga esclusa.
+     * @param length Numero di valori di ciascuna riga.
+     * @param out Array in cui scrivere le distanze.
+     * @param outOffset Posizione in {@code out} della distanza dalla riga {@code from}.
+     */
+    void distances(float[] x, int xOffset, float[] block, int from, int to, int length, double[] out, int outOffset) {
+        for (int r = from; r < to; r++) {
+            out[outOffset++] = distance(x, xOffset, block, r * length, length);
+        }
+    }
+
+    /**
+     * Indica se il kernel usa istruzioni SIMD.
+     *
+     * @return {@code false} per il kernel scalare.
+     */
+    boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Sceglie il kernel vettoriale se il modulo della Vector API è caricato e la piattaforma
+     * offre registri di almeno due {@code double}, altrimenti il kernel scalare.
+     *
+     * @return Il kernel da utilizzare.
+     */
+    private static DistanceKernel select() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                DistanceKernel kernel = (DistanceKernel) Class.forName("data.VectorDistanceKernel").getDeclaredConstructor().newInstance();
+                if (kernel.isVectorized()) {
+                    return kernel;
+                }
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Vector API non utilizzabile: si usa il kernel scalare
+            }
+        }
+        return new DistanceKernel();
+    }
+}
@@ -1,69 +1,113 @@
 package data;
 
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * La classe Example rappresenta un'entità esempio come un vettore di valori reali.
  *
- * La classe consente di gestire e manipolare un insieme di valori numerici,
- * supportando operazioni come l'aggiunta di valori e il calcolo della distanza euclidea.
+ * La classe consente di leggere un insieme di valori numerici non modificabile e di calcolarne
+ * la distanza euclidea da un altro esempio.
+ * I valori sono memorizzati in un array di {@code double}, senza oggetti {@link Double}
+ * intermedi, così che il calcolo della distanza, delegato a {@link DistanceKernel}, non allochi memoria. Un esempio può anche
+ * essere una vista in sola lettura su una riga del blocco di valori di {@link Data}.
  *
  * Implementa {@link Iterable} per consentire l'iterazione sui valori contenuti nell'esempio.
  *
  * @author Elisa Vittoria Cosmai
  */
 public class Example implements Iterable<Double>{
-    /** Vettore di valori reali che rappresenta l'esempio */
-    private final List<Double> example; //vettore di valori reali
+    /** Vettore di valori reali che rappresenta l'esempio, occupato da {@code size} posizioni a partire da {@code offset} */
+    private final double[] example; //vettore di valori reali
+    /** Posizione nel vettore del primo valore dell'esempio */
+    private final int offset;
+    /** Numero di valori presenti nell'esempio */
+    private final int size;
 
     /**
-     * Costruisce un'istanza di Example inizializzando una lista vuota di valori reali.
+     * Costruisce un'istanza di Example contenente una copia dei valori specificati.
+     *
+     * @param values Valori dell'esempio.
      */
-    public Example(){
-        example = new LinkedList<>();
+    public Example(double[] values){
+        example = values.clone();
+        offset = 0;
+        size = values.length;
+    }
+
+    /**
+     * Costruisce una vista in sola lettura su una riga di un blocco di valori, senza copiarla.
+     *
+     * @param block Blocco che contiene la riga.
+     * @param offset Posizione nel blocco del primo valore della riga.
+     * @param size Numero di valori della riga.
+     */
+    Example(double[] block, int offset, int size){
+        this.example = block;
+        this.offset = offset;
+        this.size = size;
     }
 
     /**
      * Restituisce un iteratore per scorrere i valori contenuti nell'esempio.
+     * L'iteratore è una vista sui valori memorizzati e non ne consente la rimozione.
      *
      * @return Un iteratore che scorre i valori numerici presenti nell'istanza.
      */
     public Iterator<Double> iterator(){
-        return example.iterator();
+        return new Iterator<Double>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public Double next() {
+                if (i >= size) {
+                    throw new NoSuchElementException();
+                }
+                return example[offset + i++];
+            }
+        };
+    }
+
+    /**
+     * Restituisce il numero di valori contenuti nell'esempio.
+     *
+     * @return Dimensione dell'esempio.
+     */
+    public int getDimension(){
+        return size;
     }
 
     /**
-     * Aggiunge un valore numerico alla lista dell'esempio.
+     * Restituisce il valore in una posizione dell'esempio.
      *
-     * @param v Valore da aggiungere alla lista.
+     * @param i Posizione del valore, compresa tra 0 e {@code getDimension() - 1}.
+     * @return Il valore nella posizione indicata.
      */
-    public void add(Double v){
-        example.add(v);
+    public double get(int i){
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Indice " + i + " fuori dall'esempio di dimensione " + size);
+        }
+        return example[offset + i];
     }
 
     /**
      * Calcola la distanza euclidea tra l'istanza corrente e un'altra istanza di {@link Example}.
+     * Come nella versione originale viene restituita la somma dei quadrati delle differenze.
      *
      * @param newE L'altra istanza di {@link Example} con cui confrontare la distanza.
      * @return Il valore della distanza euclidea tra i due vettori.
      * @throws InvalidSizeException Se i due vettori hanno dimensioni diverse.
      */
     public double distance(Example newE) throws InvalidSizeException{
-        if(example.size() != newE.example.size())
+        if(size != newE.size)
             throw new InvalidSizeException("Gli esempi hanno dimensioni diverse");
 
-        double sum = 0.0;
-        Iterator<Double> iterator1 = example.iterator();
-        Iterator<Double> iterator2 = newE.iterator();
-
-        while (iterator1.hasNext() && iterator2.hasNext()) {
-            double diff = iterator1.next() - iterator2.next();
-            sum += Math.pow(diff, 2);
-        }
-
-        return sum;
+        return DistanceKernel.INSTANCE.distance(example, offset, newE.example, newE.offset, size);
     }
 
     /**
@@ -86,4 +130,3 @@ public class Example implements Iterable<Double>{
         return s.toString();
     }
 }
-
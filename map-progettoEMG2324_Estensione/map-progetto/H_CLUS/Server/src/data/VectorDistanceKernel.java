@@ -0,0 +1,115 @@
+package data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernel vettoriale per la distanza euclidea al quadrato, basato sulla Vector API del JDK.
+ *
+ * Ogni iterazione elabora tanti valori quanti ne contiene un registro SIMD della piattaforma, accumulando
+ * i quadrati delle differenze in parallelo sulle varie corsie; i valori residui sono elaborati in modo scalare.
+ * I vettori più corti di un registro usano direttamente il kernel scalare. Lo stesso schema si applica
+ * ai prodotti scalari di {@link #block}, con quattro accumulatori per i gruppi di due righe per due colonne.
+ *
+ * Poiché le somme parziali delle corsie vengono sommate alla fine, l'ordine delle addizioni è diverso
+ * da quello del kernel scalare: su dati non interi il risultato può differire nelle ultime cifre.
+ * Viene caricato tramite riflessione da {@link DistanceKernel} solo se il modulo {@code jdk.incubator.vector} è presente.
+ */
+class VectorDistanceKernel extends DistanceKernel {
+    /** Forma dei registri SIMD preferita dalla piattaforma. */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    double distance(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        if (length < SPECIES.length()) {
+            return super.distance(x, xOffset, y, yOffset, length);
+        }
+
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, x, xOffset + i)
+                    .sub(DoubleVector.fromArray(SPECIES, y, yOffset + i));
+            acc = diff.fma(diff, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double diff = x[xOffset + i] - y[yOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    void dots(double[] block, int length, int rowFrom, int rowTo, int colFrom, int colTo, int from, int to, double[] out) {
+        if (to - from < SPECIES.length()) {
+            super.dots(block, length, rowFrom, rowTo, colFrom, colTo, from, to, out);
+            return;
+        }
+
+        int cols = colTo - colFrom;
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = rowFrom;
+        for (; i + 1 < rowTo; i += 2) {
+            int x0 = i * length;
+            int x1 = x0 + length;
+            int j = colFrom;
+            for (; j + 1 < colTo; j += 2) {
+                int y0 = j * length;
+                int y1 = y0 + length;
+                DoubleVector s00 = DoubleVector.zero(SPECIES);
+                DoubleVector s01 = DoubleVector.zero(SPECIES);
+                DoubleVector s10 = DoubleVector.zero(SPECIES);
+                DoubleVector s11 = DoubleVector.zero(SPECIES);
+                int k = from;
+                for (; k < bound; k += SPECIES.length()) {
+                    DoubleVector a0 = DoubleVector.fromArray(SPECIES, block, x0 + k);
+                    DoubleVector a1 = DoubleVector.fromArray(SPECIES, block, x1 + k);
+                    DoubleVector b0 = DoubleVector.fromArray(SPECIES, block, y0 + k);
+                    DoubleVector b1 = DoubleVector.fromArray(SPECIES, block, y1 + k);
+                    s00 = a0.fma(b0, s00);
+                    s01 = a0.fma(b1, s01);
+                    s10 = a1.fma(b0, s10);
+                    s11 = a1.fma(b1, s11);
+                }
+                int p = (i - rowFrom) * cols + (j - colFrom);
+                out[p] += s00.reduceLanes(VectorOperators.ADD) + super.dot(block, x0, y0, k, to);
+                out[p + 1] += s01.reduceLanes(VectorOperators.ADD) + super.dot(block, x0, y1, k, to);
+                out[p + cols] += s10.reduceLanes(VectorOperators.ADD) + super.dot(block, x1, y0, k, to);
+                out[p + cols + 1] += s11.reduceLanes(VectorOperators.ADD) + super.dot(block, x1, y1, k, to);
+            }
+            if (j < colTo) {
+                int p = (i - rowFrom) * cols + (j - colFrom);
+                out[p] += dot(block, x0, j * length, from, to);
+                out[p + cols] += dot(block, x1, j * length, from, to);
+            }
+        }
+        if (i < rowTo) {
+            for (int j = colFrom; j < colTo; j++) {
+                out[(i - rowFrom) * cols + (j - colFrom)] += dot(block, i * length, j * length, from, to);
+            }
+        }
+    }
+
+    @Override
+    double dot(double[] block, int x, int y, int from, int to) {
+        if (to - from < SPECIES.length()) {
+            return super.dot(block, x, y, from, to);
+        }
+
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = from + SPECIES.loopBound(to - from);
+        int k = from;
+        for (; k < bound; k += SPECIES.length()) {
+            acc = DoubleVector.fromArray(SPECIES, block, x + k).fma(DoubleVector.fromArray(SPECIES, block, y + k), acc);
+        }
+        return acc.reduceLanes(VectorOperators.ADD) + super.dot(block, x, y, k, to);
+    }
+
+    @Override
+    boolean isVectorized() {
+        return SPECIES.length() >= 2;
+    }
+}
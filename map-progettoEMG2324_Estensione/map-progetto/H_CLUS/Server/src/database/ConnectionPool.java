@@ -0,0 +1,305 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insieme limitato di connessioni al database riutilizzate da tutti i client del server.
+ *
+ * Le connessioni restituite restano aperte e vengono consegnate alle richieste successive, a partire
+ * dall'ultima usata, così che a regime una richiesta non paghi né il caricamento del driver né
+ * l'autenticazione con il server. Quando tutte le connessioni sono in uso, una richiesta attende che
+ * ne venga restituita una, al più per {@link #BORROW_TIMEOUT} millisecondi.
+ *
+ * Una connessione inattiva da più di {@link #VALIDATION_INTERVAL} millisecondi viene verificata prima
+ * di essere consegnata; le connessioni inattive da più di {@link #IDLE_TIMEOUT} millisecondi vengono
+ * chiuse da un thread di servizio e quelle aperte da più di {@link #MAX_LIFETIME} millisecondi vengono
+ * chiuse invece di essere riutilizzate, prima che il server le chiuda per inattività.
+ */
+final class ConnectionPool {
+    /** Tempo massimo di attesa di una connessione libera, in millisecondi. */
+    static final long BORROW_TIMEOUT = 30_000;
+    /** Inattività oltre la quale una connessione viene verificata prima dell'uso, in millisecondi. */
+    static final long VALIDATION_INTERVAL = 1_000;
+    /** Tempo massimo di risposta alla verifica di una connessione, in secondi. */
+    static final int VALIDATION_TIMEOUT = 5;
+    /** Inattività oltre la quale una connessione viene chiusa, in millisecondi. */
+    static final long IDLE_TIMEOUT = 5 * 60_000;
+    /** Durata massima di una connessione, in millisecondi. */
+    static final long MAX_LIFETIME = 30 * 60_000;
+    /** Intervallo tra due controlli delle connessioni inattive, in millisecondi. */
+    private static final long EVICTION_INTERVAL = 30_000;
+
+    /**
+     * Connessione gestita dall'insieme, con gli istanti che ne determinano la verifica e la chiusura.
+     */
+    private static class Pooled {
+        /** Connessione al database. */
+        final Connection connection;
+        /** Istante di apertura, in millisecondi. */
+        final long created;
+        /** Istante dell'ultima restituzione, in millisecondi. */
+        long lastUsed;
+
+        /**
+         * Costruttore che registra una connessione appena aperta.
+         *
+         * @param connection Connessione al database.
+         */
+        Pooled(Connection connection) {
+            this.connection = connection;
+            this.created = System.currentTimeMillis();
+            this.lastUsed = created;
+        }
+
+        /**
+         * Verifica se la connessione ha superato la durata massima.
+         *
+         * @param now Istante corrente, in millisecondi.
+         * @return {@code true} se la connessione non deve più essere riutilizzata.
+         */
+        boolean isExpired(long now) {
+            return now - created >= MAX_LIFETIME;
+        }
+    }
+
+    /** Nome della classe del driver JDBC. */
+    private final String driverClassName;
+    /** Stringa di connessione al database. */
+    private final String url;
+    /** Numero massimo di connessioni aperte. */
+    private final int maxSize;
+    /** Connessioni libere, dalla più recente alla meno recente. */
+    private final Deque<Pooled> idle = new ArrayDeque<>();
+    /** Connessioni consegnate e non ancora restituite. */
+    private final Map<Connection, Pooled> borrowed = new IdentityHashMap<>();
+    /** Numero di connessioni aperte o in apertura. */
+    private int total = 0;
+    /** Indica se il driver è già stato caricato. */
+    private volatile boolean driverLoaded = false;
+
+    /**
+     * Costruttore che prepara l'insieme senza aprire connessioni e avvia il controllo delle connessioni inattive.
+     *
+     * @param driverClassName Nome della classe del driver JDBC.
+     * @param url Stringa di connessione al database.
+     * @param maxSize Numero massimo di connessioni aperte, maggiore di zero.
+     */
+    ConnectionPool(String driverClassName, String url, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Il numero massimo di connessioni deve essere positivo: " + maxSize);
+        }
+        this.driverClassName = driverClassName;
+        this.url = url;
+        this.maxSize = maxSize;
+
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "db-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Consegna una connessione libera e valida, aprendone una nuova se non ce ne sono e il limite lo consente,
+     * altrimenti attende che ne venga restituita una.
+     *
+     * @return Connessione al database, da restituire con {@link #release(Connection)}.
+     * @throws DatabaseConnectionException Se non è possibile aprire una connessione o nessuna si libera in tempo.
+     */
+    Connection borrow() throws DatabaseConnectionException {
+        long deadline = System.currentTimeMillis() + BORROW_TIMEOUT;
+        while (true) {
+            Pooled pooled;
+            synchronized (this) {
+                while ((pooled = idle.pollFirst()) == null && total >= maxSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new DatabaseConnectionException("Nessuna connessione al database disponibile entro "
+                                + BORROW_TIMEOUT + " ms");
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DatabaseConnectionException("Attesa di una connessione al database interrotta");
+                    }
+                }
+                if (pooled == null) {
+                    total++;
+                }
+            }
+
+            if (pooled == null) {
+                try {
+                    pooled = new Pooled(open());
+                } catch (DatabaseConnectionException e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            } else if (!isUsable(pooled)) {
+                discard(pooled);
+                continue;
+            }
+            synchronized (this) {
+                borrowed.put(pooled.connection, pooled);
+            }
+            return pooled.connection;
+        }
+    }
+
+    /**
+     * Restituisce una connessione consegnata da {@link #borrow()}, che torna disponibile
+     * se è ancora aperta e non ha superato la durata massima, altrimenti viene chiusa.
+     *
+     * @param connection Connessione da restituire.
+     */
+    void release(Connection connection) {
+        Pooled pooled;
+        synchronized (this) {
+            pooled = borrowed.remove(connection);
+        }
+        if (pooled == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (pooled.isExpired(now) || !reset(connection)) {
+            discard(pooled);
+            return;
+        }
+        synchronized (this) {
+            pooled.lastUsed = now;
+            idle.addFirst(pooled);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Apre una nuova connessione, caricando il driver alla prima apertura.
+     *
+     * @return La connessione aperta.
+     * @throws DatabaseConnectionException Se il driver non è disponibile o la connessione non riesce.
+     */
+    private Connection open() throws DatabaseConnectionException {
+        if (!driverLoaded) {
+            try {
+                Class.forName(driverClassName);
+                driverLoaded = true;
+            } catch (ClassNotFoundException e) {
+                System.out.println("[!] Driver not found: " + e.getMessage());
+                throw new DatabaseConnectionException(e.toString());
+            }
+        }
+        try {
+            return DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new DatabaseConnectionException(e.toString());
+        }
+    }
+
+    /**
+     * Verifica se una connessione libera può essere consegnata: non deve aver superato la durata massima
+     * e, se è rimasta inattiva a lungo, deve rispondere alla verifica del driver.
+     *
+     * @param pooled Connessione da verificare.
+     * @return {@code true} se la connessione può essere consegnata.
+     */
+    private boolean isUsable(Pooled pooled) {
+        long now = System.currentTimeMillis();
+        if (pooled.isExpired(now)) {
+            return false;
+        }
+        try {
+            if (now - pooled.lastUsed < VALIDATION_INTERVAL) {
+                return !pooled.connection.isClosed();
+            }
+            return pooled.connection.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Riporta una connessione restituita allo stato predefinito, annullando un'eventuale transazione aperta.
+     *
+     * @param connection Connessione restituita.
+     * @return {@code true} se la connessione è aperta e può essere riutilizzata.
+     */
+    private boolean reset(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Chiude una connessione che non fa più parte dell'insieme e libera il suo posto.
+     *
+     * @param pooled Connessione da chiudere.
+     */
+    private void discard(Pooled pooled) {
+        close(pooled.connection);
+        synchronized (this) {
+            total--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Chiude le connessioni libere rimaste inattive troppo a lungo o che hanno superato la durata massima.
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<Pooled> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Pooled> it = idle.iterator();
+            while (it.hasNext()) {
+                Pooled pooled = it.next();
+                if (now - pooled.lastUsed >= IDLE_TIMEOUT || pooled.isExpired(now)) {
+                    it.remove();
+                    evicted.add(pooled);
+                }
+            }
+        }
+        for (Pooled pooled : evicted) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Chiude una connessione ignorando gli errori, che non impediscono di liberarne il posto.
+     *
+     * @param connection Connessione da chiudere.
+     */
+    private static void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // La connessione non è più utilizzabile in ogni caso
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
@@ -9,55 +8,55 @@ import java.sql.SQLException;
  * Fornisce metodi per inizializzare, ottenere e chiudere una connessione al database.
  *
  * Utilizza il driver MySQL JDBC per stabilire la connessione con un database specificato.
+ * Le connessioni provengono da un insieme condiviso da tutto il server: chiudere la connessione
+ * la restituisce all'insieme, che la riutilizza per le richieste successive.
  *
  * @author Elisa Vittoria Cosmai
  */
 public class DbAccess {
     /** Nome del driver da utilizzare */
-    private final String DRIVER_CLASS_NAME = "com.mysql.cj.jdbc.Driver";
+    private static final String DRIVER_CLASS_NAME = "com.mysql.cj.jdbc.Driver";
     /** Nome del DBMS da utilizzare */
-    private final String DBMS = "jdbc:mysql";
+    private static final String DBMS = "jdbc:mysql";
     /** Indirizzo del server da utilizzare */
-    private final String SERVER = "localhost";
+    private static final String SERVER = "localhost";
     /** Nome del database da utilizzare */
-    private final String DATABASE = "Mapdb";
+    private static final String DATABASE = "Mapdb";
     /** Porta del server da utilizzare */
-    private final int PORT = 3306;
+    private static final int PORT = 3306;
     /** Nome utente per l'accesso al database */
-    private final String USER_ID = "MapUser";
+    private static final String USER_ID = "MapUser";
     /** Password per l'accesso al database */
-    private final String PASSWORD = "map";
+    private static final String PASSWORD = "map";
+    /** Stringa di connessione al database */
+    private static final String CONNECTION_STRING = DBMS + "://" + SERVER + ":" + PORT + "/" + DATABASE
+            + "?user=" + USER_ID + "&password=" + PASSWORD + "&serverTimezone=UTC"
+            // Con il cursore lato server le query con fetch size leggono le righe a gruppi
+            + "&useCursorFetch=true";
+    /** Numero massimo di connessioni aperte contemporaneamente dal server */
+    private static final int MAX_CONNECTIONS = 8;
+    /** Connessioni condivise da tutte le istanze del server */
+    private static final ConnectionPool POOL = new ConnectionPool(DRIVER_CLASS_NAME, CONNECTION_STRING, MAX_CONNECTIONS);
     /** Connessione al database */
     private Connection conn;
 
     /**
-     * Inizializza una connessione al database caricando il driver JDBC e stabilendo la connessione.
+     * Ottiene una connessione dall'insieme delle connessioni condivise dal server, se non ne è già stata ottenuta una.
+     * A regime la connessione è già aperta e autenticata; il driver viene caricato alla prima apertura.
      *
      * @throws DatabaseConnectionException Se si verifica un errore durante il caricamento del driver
      *                                     o la connessione al database.
      */
     public void initConnection() throws DatabaseConnectionException
     {
-        try {
-            Class.forName(DRIVER_CLASS_NAME);
-        } catch(ClassNotFoundException e) {
-            System.out.println("[!] Driver not found: " + e.getMessage());
-            throw new DatabaseConnectionException(e.toString());
-        }
-        String connectionString = DBMS + "://" + SERVER + ":" + PORT + "/" + DATABASE
-                + "?user=" + USER_ID + "&password=" + PASSWORD + "&serverTimezone=UTC";
-
-
-        try {
-            conn = DriverManager.getConnection(connectionString);
-        } catch(SQLException e) {
-            throw new DatabaseConnectionException(e.toString());
+        if (conn == null) {
+            conn = POOL.borrow();
         }
     }
 
     /**
      * Restituisce la connessione attiva al database. Se la connessione non è già inizializzata,
-     * viene creata automaticamente tramite {@link #initConnection()}.
+     * viene ottenuta automaticamente tramite {@link #initConnection()}.
      *
      * @return Oggetto {@link Connection} rappresentante la connessione al database.
      * @throws DatabaseConnectionException Se si verifica un errore durante l'inizializzazione della connessione.
@@ -68,12 +67,15 @@ public class DbAccess {
     }
 
     /**
-     * Chiude la connessione al database, se attiva.
+     * Rilascia la connessione al database, se attiva, restituendola all'insieme delle connessioni condivise.
      *
-     * @throws SQLException Se si verifica un errore durante la chiusura della connessione.
+     * @throws SQLException Se si verifica un errore durante il rilascio della connessione.
      */
     public void closeConnection() throws SQLException {
-        conn.close();
+        if (conn != null) {
+            POOL.release(conn);
+            conn = null;
+        }
     }
 
 }
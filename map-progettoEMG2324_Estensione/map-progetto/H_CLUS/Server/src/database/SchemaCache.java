@@ -0,0 +1,127 @@
+package database;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoria condivisa da tutto il server degli schemi delle tabelle e dell'elenco delle tabelle del database.
+ *
+ * Gli schemi sono indicizzati per nome della tabella e restano validi per {@link #TTL} millisecondi.
+ * Non vengono letti dal catalogo del database: {@link TableData} li ricava dai metadati della query che legge
+ * le righe, li confronta con lo schema memorizzato e, se la tabella è cambiata, lo sostituisce con {@link #store},
+ * così che i caricamenti successivi della stessa tabella non ricostruiscano lo schema.
+ * {@link #invalidate(String)} scarta lo schema di una tabella modificata insieme all'elenco delle tabelle.
+ */
+public final class SchemaCache {
+    /** Durata di validità degli elementi memorizzati, in millisecondi. */
+    static final long TTL = 60_000;
+
+    /**
+     * Valore memorizzato con il suo istante di scadenza.
+     *
+     * @param <T> Tipo del valore.
+     */
+    private static class Entry<T> {
+        /** Valore memorizzato. */
+        final T value;
+        /** Istante di scadenza, in millisecondi. */
+        final long expires;
+
+        /**
+         * Costruttore che memorizza un valore appena letto dal database.
+         *
+         * @param value Valore da memorizzare.
+         */
+        Entry(T value) {
+            this.value = value;
+            this.expires = System.currentTimeMillis() + TTL;
+        }
+
+        /**
+         * Verifica se il valore è ancora valido.
+         *
+         * @return {@code true} se il valore non è scaduto.
+         */
+        boolean isValid() {
+            return System.currentTimeMillis() < expires;
+        }
+    }
+
+    /** Schemi delle tabelle, indicizzati per nome della tabella. */
+    private static final Map<String, Entry<TableSchema>> schemas = new ConcurrentHashMap<>();
+    /** Elenco delle tabelle del database, oppure {@code null} se non è memorizzato. */
+    private static volatile Entry<List<String>> tableNames;
+
+    /**
+     * Costruttore privato: la classe espone soltanto metodi statici.
+     */
+    private SchemaCache() {
+    }
+
+    /**
+     * Restituisce lo schema memorizzato di una tabella, se ancora valido.
+     *
+     * @param table Nome della tabella.
+     * @return Lo schema della tabella, oppure {@code null} se non è memorizzato o è scaduto.
+     */
+    static TableSchema lookup(String table) {
+        Entry<TableSchema> entry = schemas.get(table);
+        return entry != null && entry.isValid() ? entry.value : null;
+    }
+
+    /**
+     * Memorizza lo schema appena ricavato di una tabella, sostituendo quello precedente.
+     *
+     * @param table Nome della tabella.
+     * @param schema Schema della tabella.
+     */
+    static void store(String table, TableSchema schema) {
+        schemas.put(table, new Entry<>(schema));
+    }
+
+    /**
+     * Restituisce i nomi delle tabelle del database, leggendoli se non sono memorizzati o sono scaduti.
+     *
+     * @return Elenco non modificabile dei nomi delle tabelle.
+     * @throws SQLException Se si verifica un errore durante la lettura dei metadati.
+     * @throws DatabaseConnectionException Se si verifica un problema nella connessione al database.
+     */
+    public static List<String> getTableNames() throws SQLException, DatabaseConnectionException {
+        Entry<List<String>> entry = tableNames;
+        if (entry != null && entry.isValid()) {
+            return entry.value;
+        }
+
+        List<String> names = new ArrayList<>();
+        DbAccess db = new DbAccess();
+        try {
+            DatabaseMetaData meta = db.getConnection().getMetaData();
+            try (ResultSet rs = meta.getTables(null, null, "%", new String[]{"TABLE"})) {
+                while (rs.next()) {
+                    names.add(rs.getString("TABLE_NAME"));
+                }
+            }
+        } finally {
+            db.closeConnection();
+        }
+        List<String> result = Collections.unmodifiableList(names);
+        tableNames = new Entry<>(result);
+        return result;
+    }
+
+    /**
+     * Scarta lo schema memorizzato di una tabella e l'elenco delle tabelle, da rileggere al prossimo uso.
+     *
+     * @param table Nome della tabella il cui schema non corrisponde più a quello memorizzato.
+     */
+    public static void invalidate(String table) {
+        schemas.remove(table);
+        tableNames = null;
+    }
+}
@@ -1,8 +1,7 @@
 package database;
 
-import data.Example;
-
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -14,12 +13,78 @@ import java.util.List;
  *
  * Questa classe fornisce metodi per recuperare e gestire i dati contenuti in una tabella,
  * garantendo l'integrità e il corretto trattamento degli errori.
+ *
+ * {@link #getDistinctValues(String)} legge le righe in streaming, con uno statement in sola lettura
+ * e a scorrimento in avanti che il driver scarica dal cursore del server a gruppi di {@code fetchSize}
+ * righe, e le decodifica direttamente in gruppi di {@code fetchSize} righe di {@code double}, copiati una sola
+ * volta in un blocco della dimensione esatta: non vengono mai allocati il result set completo, oggetti
+ * {@link data.Example} o blocchi più grandi del necessario, e solo durante la copia finale il blocco convive
+ * con i gruppi ancora da copiare.
  */
 public class TableData {
+    /** Numero di righe scaricate dal server a ogni richiesta del driver, se non specificato. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    /** Numero massimo di valori di un blocco, entro il limite di lunghezza degli array della JVM. */
+    private static final int MAX_VALUES = Integer.MAX_VALUE - 8;
+
     /**
      * Oggetto {@link DbAccess} utilizzato per gestire la connessione al database.
      */
     private final DbAccess db;
+    /** Numero di righe scaricate dal server a ogni richiesta del driver. */
+    private final int fetchSize;
+
+    /**
+     * Valori delle righe distinte di una tabella, memorizzati per righe in un unico blocco.
+     */
+    public static class Values {
+        /** Valori delle righe: la colonna {@code j} della riga {@code i} si trova in posizione {@code i*columns + j}. */
+        private final double[] values;
+        /** Numero di righe. */
+        private final int rows;
+        /** Numero di colonne di ciascuna riga. */
+        private final int columns;
+
+        /**
+         * Costruttore che associa il blocco di valori alle sue dimensioni.
+         *
+         * @param values Valori memorizzati per righe, di lunghezza {@code rows*columns}.
+         * @param rows Numero di righe.
+         * @param columns Numero di colonne.
+         */
+        Values(double[] values, int rows, int columns) {
+            this.values = values;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        /**
+         * Restituisce il blocco di valori, senza copiarlo.
+         *
+         * @return Valori memorizzati per righe.
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * Restituisce il numero di righe.
+         *
+         * @return Numero di righe.
+         */
+        public int getNumberOfRows() {
+            return rows;
+        }
+
+        /**
+         * Restituisce il numero di colonne di ciascuna riga.
+         *
+         * @return Numero di colonne.
+         */
+        public int getNumberOfColumns() {
+            return columns;
+        }
+    }
 
     /**
      * Costruttore che inizializza la connessione al database.
@@ -27,54 +92,144 @@ public class TableData {
      * @param db Oggetto {@link DbAccess} che gestisce la connessione al database.
      */
     public TableData(DbAccess db) {
+        this(db, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Costruttore che inizializza la connessione al database e il numero di righe scaricate a ogni richiesta.
+     *
+     * @param db Oggetto {@link DbAccess} che gestisce la connessione al database.
+     * @param fetchSize Numero di righe scaricate dal server a ogni richiesta del driver, maggiore di zero.
+     */
+    public TableData(DbAccess db, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Il numero di righe per richiesta deve essere positivo: " + fetchSize);
+        }
         this.db = db;
+        this.fetchSize = fetchSize;
     }
 
     /**
-     * Recupera le transazioni distinte dalla tabella specificata.
+     * Recupera i valori delle righe distinte della tabella specificata in streaming.
      *
-     * Questo metodo esegue una query sulla tabella specificata e restituisce un elenco di oggetti
-     * {@link Example} che rappresentano le transazioni univoche.
+     * Una sola query seleziona tutti gli attributi della tabella: i metadati del risultato vengono confrontati
+     * con lo schema memorizzato in {@link SchemaCache}, che viene usato se descrive ancora tutti gli attributi
+     * della tabella e altrimenti viene ricostruito dai metadati stessi, senza interrogare il catalogo del database.
+     * I valori degli attributi dello schema sono letti per posizione.
+     * Le righe distinte non vengono contate in anticipo, perché il server dovrebbe calcolarle due volte:
+     * sono raccolte in gruppi di {@code fetchSize} righe e copiate nel blocco finale quando se ne conosce il numero.
      *
      * @param table Nome della tabella da cui recuperare i dati.
-     * @return Lista di oggetti {@link Example} contenenti i dati delle transazioni distinte.
+     * @return I valori delle righe distinte, una colonna per ciascun attributo dello schema.
      * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
      * @throws EmptySetException Se la tabella non contiene alcun dato.
-     * @throws MissingNumberException Se uno degli attributi della tabella non è di tipo numerico.
+     * @throws MissingNumberException Se uno degli attributi della tabella non è di tipo numerico, o se non ce ne sono.
      * @throws DatabaseConnectionException Se si verifica un problema nella connessione al database.
      */
-    public List<Example> getDistinctTransazioni(String table) throws SQLException, EmptySetException, MissingNumberException, DatabaseConnectionException {
-        List<Example> transazioni = new ArrayList<>();
+    public Values getDistinctValues(String table) throws SQLException, EmptySetException, MissingNumberException, DatabaseConnectionException {
         Connection con = db.getConnection();
-        Statement stmt;
-        ResultSet rs;
-        TableSchema schema = new TableSchema(db, table);
-
-        stmt = con.createStatement();
-        String query = "SELECT DISTINCT * FROM " + table;
-        rs = stmt.executeQuery(query);
+        try {
+            return read(con, table);
+        } finally {
+            db.closeConnection();
+        }
+    }
 
-        if (!rs.isBeforeFirst()) { // Verifica se il ResultSet è vuoto
-            throw new EmptySetException("La tabella " + table + " è vuota.\n");
+    /**
+     * Restituisce la checksum del contenuto della tabella specificata, calcolata dal server senza trasferire le righe:
+     * cambia quando cambiano le righe o gli attributi della tabella. Il server la calcola leggendo ogni riga,
+     * per cui il costo cresce con la dimensione della tabella.
+     *
+     * @param table Nome della tabella.
+     * @return La checksum della tabella.
+     * @throws SQLException Se si verifica un errore durante l'esecuzione della query o la tabella non esiste.
+     * @throws DatabaseConnectionException Se si verifica un problema nella connessione al database.
+     */
+    public long getChecksum(String table) throws SQLException, DatabaseConnectionException {
+        Connection con = db.getConnection();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("CHECKSUM TABLE " + table)) {
+            rs.next();
+            long checksum = rs.getLong(2);
+            if (rs.wasNull()) {
+                throw new SQLException("La tabella " + table + " non esiste.");
+            }
+            return checksum;
+        } finally {
+            db.closeConnection();
         }
+    }
+
+    /**
+     * Legge in streaming i valori delle righe distinte della tabella, con lo schema memorizzato se descrive ancora
+     * la tabella, altrimenti con quello ricavato dai metadati del risultato, che viene memorizzato.
+     *
+     * @param con Connessione al database.
+     * @param table Nome della tabella da cui recuperare i dati.
+     * @return I valori delle righe distinte.
+     * @throws SQLException Se si verifica un errore durante l'esecuzione della query.
+     * @throws EmptySetException Se la tabella non contiene alcun dato.
+     * @throws MissingNumberException Se uno degli attributi della tabella non è di tipo numerico, o se non ce ne sono.
+     */
+    private Values read(Connection con, String table) throws SQLException, EmptySetException, MissingNumberException {
+        List<double[]> chunks = new ArrayList<>();
+        long total = 0;
+        int columns;
+        try (PreparedStatement stmt = con.prepareStatement("SELECT DISTINCT * FROM " + table,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                TableSchema schema = SchemaCache.lookup(table);
+                if (schema == null || !schema.describes(rs.getMetaData())) {
+                    schema = new TableSchema(db, rs.getMetaData());
+                    SchemaCache.store(table, schema);
+                }
+
+                columns = schema.getNumberOfAttributes();
+                int[] positions = new int[columns];
+                for (int j = 0; j < columns; j++) {
+                    TableSchema.Column column = schema.getColumn(j);
+                    if (!column.isNumber()) {
+                        throw new MissingNumberException("Attributo non numerico trovato: " + column.getColumnName() + "\n");
+                    }
+                    positions[j] = column.getPosition();
+                }
+                if (columns == 0) {
+                    throw new MissingNumberException("La tabella " + table + " non ha attributi numerici.\n");
+                }
 
-        while (rs.next()) {
-            Example example = new Example();
-            for (int i = 0; i < schema.getNumberOfAttributes(); i++) {
-                TableSchema.Column column = schema.getColumn(i);
-                if (!column.isNumber()) {
-                    throw new MissingNumberException("Attributo non numerico trovato: " + column.getColumnName() + "\n");
+                int chunkRows = Math.min(fetchSize, MAX_VALUES / columns);
+                double[] chunk = null;
+                int filled = 0;
+                while (rs.next()) {
+                    if (total + columns > MAX_VALUES) {
+                        throw new SQLException("La tabella " + table + " è troppo grande per essere caricata in memoria.");
+                    }
+                    if (chunk == null || filled == chunk.length) {
+                        chunk = new double[chunkRows * columns];
+                        chunks.add(chunk);
+                        filled = 0;
+                    }
+                    for (int j = 0; j < columns; j++) {
+                        chunk[filled++] = rs.getDouble(positions[j]);
+                    }
+                    total += columns;
                 }
-                example.add(rs.getDouble(column.getColumnName()));
             }
-            transazioni.add(example);
+        }
+        if (total == 0) {
+            throw new EmptySetException("La tabella " + table + " è vuota.\n");
         }
 
-        rs.close();
-        stmt.close();
-        db.closeConnection();
-
-        return transazioni;
+        double[] values = new double[(int) total];
+        int k = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            double[] chunk = chunks.get(c);
+            int length = (int) Math.min(chunk.length, total - k);
+            System.arraycopy(chunk, 0, values, k, length);
+            k += length;
+            chunks.set(c, null); // il gruppo copiato può essere liberato
+        }
+        return new Values(values, k / columns, columns);
     }
 }
-
@@ -1,8 +1,6 @@
 package database;
 
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,6 +18,24 @@ public class TableSchema {
 	 */
 	private final DbAccess db;
 
+	/**
+	 * Corrispondenza tra i nomi dei tipi SQL e i tipi degli attributi; i tipi assenti non sono considerati.
+	 */
+	private static final HashMap<String,String> mapSQL_JAVATypes= new HashMap<>();
+
+	static {
+		//http://java.sun.com/j2se/1.3/docs/guide/jdbc/getstart/mapping.html
+		mapSQL_JAVATypes.put("CHAR","string");
+		mapSQL_JAVATypes.put("VARCHAR","string");
+		mapSQL_JAVATypes.put("LONGVARCHAR","string");
+		mapSQL_JAVATypes.put("BIT","string");
+		mapSQL_JAVATypes.put("SHORT","number");
+		mapSQL_JAVATypes.put("INT","number");
+		mapSQL_JAVATypes.put("LONG","number");
+		mapSQL_JAVATypes.put("FLOAT","number");
+		mapSQL_JAVATypes.put("DOUBLE","number");
+	}
+
 	/**
 	 * Classe interna che rappresenta un attributo della tabella.
 	 */
@@ -28,16 +44,20 @@ public class TableSchema {
 		private final String name;
 		/** Tipo dell'attributo della tabella */
 		private final String type;
+		/** Posizione dell'attributo tra tutti quelli della tabella, a partire da 1 */
+		private final int position;
 
 		/**
 		 * Costruttore che inizializza un attributo della tabella con nome e tipo specificati.
 		 *
 		 * @param name Nome dell'attributo.
 		 * @param type Tipo dell'attributo.
+		 * @param position Posizione dell'attributo nella tabella, a partire da 1.
 		 */
-		Column(String name,String type){
+		Column(String name,String type,int position){
 			this.name=name;
 			this.type=type;
+			this.position=position;
 		}
 
 		/**
@@ -58,6 +78,15 @@ public class TableSchema {
 			return type.equals("number");
 		}
 
+		/**
+		 * Restituisce la posizione dell'attributo nel risultato di una query che seleziona tutti gli attributi della tabella.
+		 *
+		 * @return Posizione dell'attributo, a partire da 1.
+		 */
+		int getPosition(){
+			return position;
+		}
+
 		/**
 		 * Restituisce una rappresentazione testuale dell'attributo.
 		 *
@@ -72,41 +101,55 @@ public class TableSchema {
 	 * Lista degli attributi della tabella.
 	 */
 	private List<Column> tableSchema= new ArrayList<>();
+	/**
+	 * Nomi di tutti gli attributi della tabella, compresi quelli di tipo non considerato, nell'ordine della tabella.
+	 */
+	private final List<String> allNames = new ArrayList<>();
+	/**
+	 * Nomi dei tipi SQL di tutti gli attributi della tabella, nello stesso ordine di {@code allNames}.
+	 */
+	private final List<String> allTypes = new ArrayList<>();
 
 	/**
-	 * Costruttore che recupera lo schema della tabella specificata.
+	 * Costruttore che ricava lo schema dai metadati del risultato di una query sulla tabella,
+	 * senza interrogare il catalogo del database.
 	 *
 	 * @param db Connessione al database.
-	 * @param tableName Nome della tabella di cui ottenere lo schema.
-	 * @throws SQLException Se si verifica un errore SQL durante il recupero delle informazioni.
-	 * @throws DatabaseConnectionException Se si verifica un errore di connessione al database.
+	 * @param meta Metadati del risultato di una query che seleziona tutti gli attributi della tabella.
+	 * @throws SQLException Se si verifica un errore SQL durante la lettura dei metadati.
 	 */
-	public TableSchema(DbAccess db, String tableName) throws SQLException, DatabaseConnectionException{
+	public TableSchema(DbAccess db, ResultSetMetaData meta) throws SQLException{
 		this.db=db;
-		HashMap<String,String> mapSQL_JAVATypes= new HashMap<>();
-		//http://java.sun.com/j2se/1.3/docs/guide/jdbc/getstart/mapping.html
-		mapSQL_JAVATypes.put("CHAR","string");
-		mapSQL_JAVATypes.put("VARCHAR","string");
-		mapSQL_JAVATypes.put("LONGVARCHAR","string");
-		mapSQL_JAVATypes.put("BIT","string");
-		mapSQL_JAVATypes.put("SHORT","number");
-		mapSQL_JAVATypes.put("INT","number");
-		mapSQL_JAVATypes.put("LONG","number");
-		mapSQL_JAVATypes.put("FLOAT","number");
-		mapSQL_JAVATypes.put("DOUBLE","number");
-
-		Connection con=db.getConnection();
-		DatabaseMetaData meta = con.getMetaData();
-		ResultSet res = meta.getColumns(null, null, tableName, null);
-
-		while (res.next()) {
-			if(mapSQL_JAVATypes.containsKey(res.getString("TYPE_NAME")))
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			allNames.add(meta.getColumnName(i));
+			allTypes.add(meta.getColumnTypeName(i));
+			if(mapSQL_JAVATypes.containsKey(meta.getColumnTypeName(i)))
 				tableSchema.add(new Column(
-						res.getString("COLUMN_NAME"),
-						mapSQL_JAVATypes.get(res.getString("TYPE_NAME")))
+						meta.getColumnName(i),
+						mapSQL_JAVATypes.get(meta.getColumnTypeName(i)),
+						i)
 				);
 		}
-		res.close();
+	}
+
+	/**
+	 * Verifica se i metadati del risultato di una query che seleziona tutti gli attributi della tabella
+	 * descrivono ancora gli stessi attributi, nello stesso ordine e con gli stessi tipi SQL: un attributo aggiunto,
+	 * rimosso, rinominato o di tipo diverso, anche se non considerato dallo schema, rende lo schema superato.
+	 *
+	 * @param meta Metadati del risultato della query.
+	 * @return {@code true} se lo schema corrisponde ai metadati, {@code false} se la tabella è cambiata.
+	 * @throws SQLException Se si verifica un errore SQL durante la lettura dei metadati.
+	 */
+	boolean describes(ResultSetMetaData meta) throws SQLException{
+		if (meta.getColumnCount() != allNames.size())
+			return false;
+		for (int i = 0; i < allNames.size(); i++) {
+			if (!allNames.get(i).equalsIgnoreCase(meta.getColumnName(i + 1))
+					|| !allTypes.get(i).equals(meta.getColumnTypeName(i + 1)))
+				return false;
+		}
+		return true;
 	}
 
 	/**
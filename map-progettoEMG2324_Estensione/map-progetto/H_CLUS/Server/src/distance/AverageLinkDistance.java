@@ -2,7 +2,6 @@ package distance;
 
 import clustering.Cluster;
 import data.Data;
-import data.Example;
 import data.InvalidSizeException;
 
 /**
@@ -14,7 +13,7 @@ import data.InvalidSizeException;
  *
  * @author Elisa Vittoria Cosmai
  */
-public class AverageLinkDistance implements ClusterDistance {
+public class AverageLinkDistance implements LanceWilliamsDistance {
 
     /**
      * Calcola la distanza media (Average Link) tra due cluster.
@@ -34,17 +33,69 @@ public class AverageLinkDistance implements ClusterDistance {
         double sum = 0.0;
 
         // Itera sugli esempi del primo cluster
-        for (Integer index1 : c1) {
-            Example e1 = d.getExample(index1);
-
-            // Calcola la distanza tra e1 e ogni esempio del secondo cluster
-            for (Integer index2 : c2) {
-                Example e2 = d.getExample(index2);
-                sum += e1.distance(e2);
+        for (int p1 = 0; p1 < c1.getSize(); p1++) {
+            int index1 = c1.get(p1);
+            // Calcola la distanza tra l'esempio index1 e ogni esempio del secondo cluster
+            for (int p2 = 0; p2 < c2.getSize(); p2++) {
+                int index2 = c2.get(p2);
+                sum += d.distance(index1, index2);
             }
         }
 
         // Restituisce la distanza media
         return sum / (c1.getSize() * c2.getSize());
     }
+
+    /**
+     * Calcola la distanza media (Average Link) tra due cluster usando le distanze precalcolate
+     * nella matrice {@code m}.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @param m  Matrice delle distanze tra gli esempi del dataset.
+     * @return La distanza media (Average Link) tra i due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d, DistanceMatrix m) {
+        double sum = 0.0;
+
+        for (int p1 = 0; p1 < c1.getSize(); p1++) {
+            int index1 = c1.get(p1);
+            for (int p2 = 0; p2 < c2.getSize(); p2++) {
+                int index2 = c2.get(p2);
+                sum += m.get(index1, index2);
+            }
+        }
+
+        return sum / (c1.getSize() * c2.getSize());
+    }
+
+    /**
+     * Aggiorna la distanza Average Link dopo una fusione: la distanza media del cluster fuso
+     * da {@code k} è la media delle distanze di {@code i} e {@code j} da {@code k},
+     * pesata sulle dimensioni dei due cluster.
+     *
+     * @param dik Distanza tra i cluster {@code i} e {@code k}.
+     * @param djk Distanza tra i cluster {@code j} e {@code k}.
+     * @param dij Distanza tra i cluster {@code i} e {@code j}.
+     * @param ni  Numero di esempi del cluster {@code i}.
+     * @param nj  Numero di esempi del cluster {@code j}.
+     * @param nk  Numero di esempi del cluster {@code k}.
+     * @return La distanza tra il cluster fuso e il cluster {@code k}.
+     */
+    @Override
+    public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+        return (ni * dik + nj * djk) / (ni + nj);
+    }
+
+    /**
+     * La distanza Average Link è riducibile.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isReducible() {
+        return true;
+    }
 }
@@ -0,0 +1,79 @@
+package distance;
+
+import clustering.Cluster;
+import data.Data;
+
+/**
+ * Classe che implementa la distanza Centroid tra due cluster.
+ *
+ * La distanza tra due cluster è la distanza tra i loro centroidi, cioè la somma dei quadrati delle differenze
+ * tra le medie dei valori dei rispettivi esempi. I centroidi si ricavano in O(d) dalle statistiche mantenute
+ * da ciascun {@link Cluster}, senza esaminare gli esempi.
+ *
+ * La distanza non è riducibile: il cluster fuso può risultare più vicino a un terzo cluster
+ * di quanto lo fossero i due cluster di partenza.
+ */
+public class CentroidDistance implements LanceWilliamsDistance {
+
+    /**
+     * Calcola la distanza tra i centroidi di due cluster.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @return La distanza tra i centroidi dei due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d) {
+        return centroidDistance(c1, c2, d);
+    }
+
+    /**
+     * Calcola la distanza tra i centroidi di due cluster; la matrice delle distanze tra esempi non è necessaria.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @param m  Matrice delle distanze tra gli esempi del dataset (non utilizzata).
+     * @return La distanza tra i centroidi dei due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d, DistanceMatrix m) {
+        return centroidDistance(c1, c2, d);
+    }
+
+    /**
+     * Calcola la somma dei quadrati delle differenze tra i centroidi di due cluster.
+     *
+     * @param c1 Primo cluster.
+     * @param c2 Secondo cluster.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @return La distanza tra i centroidi.
+     */
+    static double centroidDistance(Cluster c1, Cluster c2, Data d) {
+        double sum = 0.0;
+        for (int j = 0; j < d.getNumberOfAttributes(); j++) {
+            double diff = c1.getCentroid(d, j) - c2.getCentroid(d, j);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Aggiorna la distanza Centroid dopo una fusione: il centroide del cluster fuso è la media dei centroidi
+     * di {@code i} e {@code j} pesata sulle loro dimensioni.
+     *
+     * @param dik Distanza tra i cluster {@code i} e {@code k}.
+     * @param djk Distanza tra i cluster {@code j} e {@code k}.
+     * @param dij Distanza tra i cluster {@code i} e {@code j}.
+     * @param ni  Numero di esempi del cluster {@code i}.
+     * @param nj  Numero di esempi del cluster {@code j}.
+     * @param nk  Numero di esempi del cluster {@code k}.
+     * @return La distanza tra il cluster fuso e il cluster {@code k}.
+     */
+    @Override
+    public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+        double n = ni + nj;
+        return (ni * dik + nj * djk) / n - ni * (nj * dij) / (n * n);
+    }
+}
@@ -23,4 +23,20 @@ public interface ClusterDistance {
 	 * @throws InvalidSizeException Se la dimensione del cluster è minore di 2.
 	 */
 	public double distance(Cluster c1, Cluster c2, Data d) throws InvalidSizeException;
+
+	/**
+	 * Calcola la distanza tra due cluster leggendo le distanze tra esempi da una {@link DistanceMatrix}
+	 * già calcolata, invece di ricalcolarle a ogni confronto.
+	 * L'implementazione predefinita ignora la matrice e ricade su {@link #distance(Cluster, Cluster, Data)}.
+	 *
+	 * @param c1 Primo cluster da confrontare.
+	 * @param c2 Secondo cluster da confrontare.
+	 * @param d  Dataset contenente i dati degli esempi nei cluster.
+	 * @param m  Matrice delle distanze tra gli esempi del dataset.
+	 * @return La distanza calcolata tra i due cluster.
+	 * @throws InvalidSizeException Se la dimensione del cluster è minore di 2.
+	 */
+	default double distance(Cluster c1, Cluster c2, Data d, DistanceMatrix m) throws InvalidSizeException {
+		return distance(c1, c2, d);
+	}
 }
@@ -0,0 +1,98 @@
+package distance;
+
+import clustering.Cluster;
+import data.Data;
+import data.InvalidSizeException;
+
+/**
+ * Classe che implementa la distanza Complete Link tra due cluster.
+ *
+ * La distanza Complete Link (o distanza massima) tra due cluster è definita come la distanza massima tra qualsiasi
+ * coppia di esempi, uno appartenente al primo cluster e l'altro al secondo cluster.
+ * Dopo una fusione la distanza si aggiorna in O(1) con la formula di Lance-Williams, per cui il confronto
+ * di tutte le coppie di esempi è necessario soltanto quando la matrice delle distanze non è disponibile.
+ */
+public class CompleteLinkDistance implements LanceWilliamsDistance {
+
+    /**
+     * Calcola la distanza Complete Link (massima) tra due cluster confrontando tutte le coppie di esempi.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @return La distanza massima tra due cluster.
+     * @throws InvalidSizeException Se le dimensioni degli esempi non corrispondono durante il calcolo.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d) throws InvalidSizeException {
+        double max = 0.0;
+
+        for (int p1 = 0; p1 < c1.getSize(); p1++) {
+            int index1 = c1.get(p1);
+            for (int p2 = 0; p2 < c2.getSize(); p2++) {
+                int index2 = c2.get(p2);
+                double distance = d.distance(index1, index2);
+                if (distance > max) {
+                    max = distance;
+                }
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Calcola la distanza Complete Link (massima) tra due cluster usando le distanze precalcolate
+     * nella matrice {@code m}.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @param m  Matrice delle distanze tra gli esempi del dataset.
+     * @return La distanza massima tra due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d, DistanceMatrix m) {
+        double max = 0.0;
+
+        for (int p1 = 0; p1 < c1.getSize(); p1++) {
+            int index1 = c1.get(p1);
+            for (int p2 = 0; p2 < c2.getSize(); p2++) {
+                int index2 = c2.get(p2);
+                double distance = m.get(index1, index2);
+                if (distance > max) {
+                    max = distance;
+                }
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Aggiorna la distanza Complete Link dopo una fusione: la distanza massima del cluster fuso
+     * da {@code k} è la maggiore tra le distanze di {@code i} e {@code j} da {@code k}.
+     *
+     * @param dik Distanza tra i cluster {@code i} e {@code k}.
+     * @param djk Distanza tra i cluster {@code j} e {@code k}.
+     * @param dij Distanza tra i cluster {@code i} e {@code j}.
+     * @param ni  Numero di esempi del cluster {@code i}.
+     * @param nj  Numero di esempi del cluster {@code j}.
+     * @param nk  Numero di esempi del cluster {@code k}.
+     * @return La distanza tra il cluster fuso e il cluster {@code k}.
+     */
+    @Override
+    public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+        return Math.max(dik, djk);
+    }
+
+    /**
+     * La distanza Complete Link è riducibile.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isReducible() {
+        return true;
+    }
+}
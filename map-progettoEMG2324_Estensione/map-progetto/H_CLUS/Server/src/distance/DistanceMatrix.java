@@ -0,0 +1,285 @@
+package distance;
+
+import data.Data;
+import data.InvalidSizeException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * La classe DistanceMatrix memorizza le distanze tra tutte le coppie di esempi di un dataset.
+ *
+ * La matrice è simmetrica e ha diagonale nulla, per cui viene conservato solo il triangolo
+ * superiore (coppie {@code i < j}) in forma condensata, in un unico array di {@code double}
+ * di lunghezza {@code n(n-1)/2}.
+ * Viene calcolata una sola volta per ciascuna esecuzione del clustering e riutilizzata
+ * per tutti i livelli del dendrogramma e da qualunque {@link ClusterDistance}.
+ * Per i dataset in singola precisione le distanze sono memorizzate in un array di {@code float},
+ * che occupa metà della memoria.
+ * Se la matrice non rientra nello heap, {@link #create(Data, ForkJoinPool)} la costruisce su file
+ * tramite {@link MappedDistanceMatrix}: per questo chi ottiene una matrice da {@code create} la
+ * rilascia con {@link #close()} al termine del clustering.
+ *
+ * Le distanze sono calcolate a blocchi di {@link #BLOCK}x{@link #BLOCK} coppie con
+ * {@link Data#distanceBlock}, e le righe di blocchi possono essere distribuite sui thread di un pool.
+ */
+public class DistanceMatrix implements AutoCloseable {
+    /** Numero di esempi per lato dei blocchi di coppie calcolati insieme. */
+    static final int BLOCK = 32;
+
+    /** Distanze tra le coppie di esempi, memorizzate per righe del triangolo superiore. */
+    private final double[] distances;
+    /** Distanze in singola precisione, con la stessa disposizione di {@code distances}, oppure {@code null}. */
+    private final float[] singleDistances;
+    /** Numero di esempi del dataset. */
+    private final int n;
+
+    /**
+     * Costruisce la matrice delle distanze calcolando la distanza tra ogni coppia di esempi del dataset.
+     *
+     * @param data Dataset di cui calcolare le distanze.
+     * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+     */
+    public DistanceMatrix(Data data) throws InvalidSizeException {
+        this(data, null);
+    }
+
+    /**
+     * Costruisce la matrice delle distanze calcolando i blocchi di coppie sui thread del pool specificato.
+     *
+     * @param data Dataset di cui calcolare le distanze.
+     * @param pool Pool dedicato al clustering, oppure {@code null} per il calcolo sequenziale.
+     * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+     */
+    public DistanceMatrix(Data data, ForkJoinPool pool) throws InvalidSizeException {
+        this.n = data.getNumberOfExample();
+        this.distances = data.isSinglePrecision() ? null : new double[(int) cells(n)];
+        this.singleDistances = data.isSinglePrecision() ? new float[(int) cells(n)] : null;
+        fill(data, pool);
+    }
+
+    /**
+     * Costruttore per le sottoclassi che memorizzano le distanze fuori dall'array condensato.
+     *
+     * @param n Numero di esempi del dataset.
+     */
+    DistanceMatrix(int n) {
+        this.n = n;
+        this.distances = null;
+        this.singleDistances = null;
+    }
+
+    /**
+     * Costruisce la matrice delle distanze nello heap se vi rientra, altrimenti su file,
+     * nella stessa precisione del dataset.
+     *
+     * @param data Dataset di cui calcolare le distanze.
+     * @param pool Pool dedicato al clustering, oppure {@code null} per il calcolo sequenziale.
+     * @return La matrice delle distanze tra gli esempi del dataset.
+     * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+     */
+    public static DistanceMatrix create(Data data, ForkJoinPool pool) throws InvalidSizeException {
+        if (fits(data.getNumberOfExample(), data.isSinglePrecision())) {
+            return new DistanceMatrix(data, pool);
+        }
+        return new MappedDistanceMatrix(data, data.isSinglePrecision(), pool);
+    }
+
+    /**
+     * Verifica se {@link #create(Data, ForkJoinPool)} può costruire la matrice per {@code n} esempi,
+     * nello heap oppure su file.
+     *
+     * @param n Numero di esempi del dataset.
+     * @param singlePrecision {@code true} se le distanze sono memorizzate come {@code float}.
+     * @return {@code true} se la matrice può essere costruita, altrimenti {@code false}.
+     */
+    public static boolean canCreate(int n, boolean singlePrecision) {
+        return fits(n, singlePrecision) || MappedDistanceMatrix.fits(n, singlePrecision);
+    }
+
+    /**
+     * Verifica se la matrice condensata per {@code n} esempi può essere allocata nello heap:
+     * l'array deve rientrare nei limiti di indicizzazione di Java e occupare al più
+     * metà della memoria heap ancora disponibile.
+     *
+     * @param n Numero di esempi del dataset.
+     * @param singlePrecision {@code true} se le distanze sono memorizzate come {@code float}.
+     * @return {@code true} se la matrice può essere costruita, altrimenti {@code false}.
+     */
+    public static boolean fits(int n, boolean singlePrecision) {
+        long cells = cells(n);
+        if (cells > Integer.MAX_VALUE - 8) {
+            return false;
+        }
+        Runtime rt = Runtime.getRuntime();
+        long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+        return cells * (singlePrecision ? Float.BYTES : Double.BYTES) < available / 2;
+    }
+
+    /**
+     * Restituisce il numero di celle della matrice condensata per {@code n} esempi.
+     *
+     * @param n Numero di esempi.
+     * @return Numero di coppie distinte {@code n(n-1)/2}.
+     */
+    private static long cells(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * Calcola e memorizza con {@link #store} le distanze tra tutte le coppie di esempi, una riga di blocchi alla volta.
+     * Righe di blocchi diverse scrivono coppie diverse e possono essere calcolate da thread diversi.
+     *
+     * @param data Dataset di cui calcolare le distanze.
+     * @param pool Pool su cui distribuire le righe di blocchi, oppure {@code null} per il calcolo sequenziale.
+     */
+    final void fill(Data data, ForkJoinPool pool) {
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        if (pool == null || blocks <= 1) {
+            fill(data, 0, blocks);
+        } else {
+            pool.invoke(new Fill(data, 0, blocks));
+        }
+    }
+
+    /**
+     * Calcola e memorizza le distanze delle righe di blocchi {@code lo..hi-1}, dalla diagonale in poi.
+     *
+     * @param data Dataset di cui calcolare le distanze.
+     * @param lo Prima riga di blocchi.
+     * @param hi Prima riga di blocchi esclusa.
+     */
+    private void fill(Data data, int lo, int hi) {
+        double[] out = new double[BLOCK * BLOCK];
+        for (int b = lo; b < hi; b++) {
+            int rowFrom = b * BLOCK;
+            int rowTo = Math.min(n, rowFrom + BLOCK);
+            for (int colFrom = rowFrom; colFrom < n; colFrom += BLOCK) {
+                int colTo = Math.min(n, colFrom + BLOCK);
+                int cols = colTo - colFrom;
+                data.distanceBlock(rowFrom, rowTo, colFrom, colTo, out);
+                for (int i = rowFrom; i < rowTo; i++) {
+                    int from = Math.max(colFrom, i + 1);
+                    if (from < colTo) {
+                        store(i, from, colTo, out, (i - rowFrom) * cols + (from - colFrom));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Memorizza le distanze di un esempio da esempi consecutivi che lo seguono, contigue nell'array condensato.
+     *
+     * @param i Indice dell'esempio.
+     * @param from Indice del primo esempio, maggiore di {@code i}.
+     * @param to Indice del primo esempio escluso.
+     * @param values Array che contiene le distanze.
+     * @param offset Posizione in {@code values} della distanza dall'esempio {@code from}.
+     */
+    void store(int i, int from, int to, double[] values, int offset) {
+        int k = index(i, from);
+        if (singleDistances != null) {
+            for (int j = from; j < to; j++) {
+                singleDistances[k++] = (float) values[offset++];
+            }
+        } else {
+            System.arraycopy(values, offset, distances, k, to - from);
+        }
+    }
+
+    /**
+     * Intervallo di righe di blocchi, diviso a metà finché ne contiene più di una.
+     */
+    private class Fill extends RecursiveAction {
+        /** Versione della forma serializzata ereditata da {@link RecursiveAction}, mai usata: i compiti non escono dal pool. */
+        private static final long serialVersionUID = 1L;
+        private final Data data;
+        private final int lo;
+        private final int hi;
+
+        Fill(Data data, int lo, int hi) {
+            this.data = data;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 1) {
+                fill(data, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Fill(data, lo, mid), new Fill(data, mid, hi));
+        }
+    }
+
+    /**
+     * Restituisce la distanza tra due esempi del dataset.
+     *
+     * @param i Indice del primo esempio.
+     * @param j Indice del secondo esempio.
+     * @return La distanza tra gli esempi {@code i} e {@code j}, nulla se coincidono.
+     */
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        if (singleDistances != null) {
+            return singleDistances[index(i, j)];
+        }
+        return distances[index(i, j)];
+    }
+
+    /**
+     * Sostituisce la distanza memorizzata per una coppia di indici.
+     * Consente ai motori di clustering che aggiornano le distanze in place, come quello basato
+     * sulla formula di Lance-Williams, di riutilizzare la matrice come matrice tra cluster.
+     *
+     * @param i Indice del primo elemento.
+     * @param j Indice del secondo elemento, diverso da {@code i}.
+     * @param value Nuova distanza tra i due elementi.
+     */
+    public void set(int i, int j, double value) {
+        if (singleDistances != null) {
+            singleDistances[index(i, j)] = (float) value;
+            return;
+        }
+        distances[index(i, j)] = value;
+    }
+
+    /**
+     * Restituisce la posizione nell'array condensato della coppia {@code (i, j)}, con {@code i != j}.
+     *
+     * @param i Indice del primo elemento.
+     * @param j Indice del secondo elemento.
+     * @return Posizione della coppia nell'array {@code distances}.
+     */
+    private int index(int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        // Le righe precedenti alla i-esima occupano i*(2n-i-1)/2 celle
+        return (int) ((long) i * (2L * n - i - 1) / 2 + (j - i - 1));
+    }
+
+    /**
+     * Restituisce il numero di esempi coperti dalla matrice.
+     *
+     * @return Numero di esempi.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Rilascia la memoria occupata dalla matrice, che non può più essere usata.
+     * La matrice nello heap viene liberata dal garbage collector, per cui il metodo non fa nulla.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,35 @@
+package distance;
+
+/**
+ * Interfaccia per le distanze tra cluster che possono essere aggiornate con la formula
+ * di Lance-Williams.
+ *
+ * Quando due cluster {@code i} e {@code j} vengono fusi, la distanza del nuovo cluster da un
+ * qualunque altro cluster {@code k} si ottiene dalle sole distanze già note tra {@code i},
+ * {@code j} e {@code k} e dalle dimensioni dei cluster, senza riesaminare gli esempi.
+ */
+public interface LanceWilliamsDistance extends ClusterDistance {
+	/**
+	 * Calcola la distanza tra il cluster ottenuto fondendo {@code i} e {@code j} e un altro cluster {@code k}.
+	 *
+	 * @param dik Distanza tra i cluster {@code i} e {@code k}.
+	 * @param djk Distanza tra i cluster {@code j} e {@code k}.
+	 * @param dij Distanza tra i cluster {@code i} e {@code j}.
+	 * @param ni  Numero di esempi del cluster {@code i}.
+	 * @param nj  Numero di esempi del cluster {@code j}.
+	 * @param nk  Numero di esempi del cluster {@code k}.
+	 * @return La distanza tra il cluster fuso e il cluster {@code k}.
+	 */
+	double update(double dik, double djk, double dij, int ni, int nj, int nk);
+
+	/**
+	 * Indica se la distanza è riducibile, cioè se la fusione di due cluster non produce mai un cluster
+	 * più vicino a un terzo di quanto lo fosse il più vicino dei due. Le distanze riducibili possono
+	 * essere calcolate con l'algoritmo della catena dei vicini più prossimi.
+	 *
+	 * @return {@code true} se la distanza è riducibile, altrimenti {@code false}.
+	 */
+	default boolean isReducible() {
+		return false;
+	}
+}
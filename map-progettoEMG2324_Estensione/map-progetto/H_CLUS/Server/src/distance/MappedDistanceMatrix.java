@@ -0,0 +1,276 @@
+package distance;
+
+import data.Data;
+import data.InvalidSizeException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matrice delle distanze memorizzata fuori dallo heap, in un file temporaneo mappato in memoria
+ * con {@link FileChannel#map}, per i dataset la cui matrice non rientra nello heap.
+ *
+ * Il triangolo superiore è diviso in blocchi quadrati di {@link #TILE}x{@link #TILE} coppie, contigui
+ * nel file e ordinati per righe di blocchi: sia una riga sia una colonna della matrice attraversano
+ * un blocco ogni {@code TILE} esempi, per cui le scansioni dei motori di clustering, che leggono
+ * e aggiornano le righe dei cluster fusi, toccano poche pagine del file e sfruttano la page cache
+ * del sistema operativo invece di richiedere una pagina per ciascun valore. I blocchi sono
+ * raggruppati in segmenti mappati di al più 1 GiB, letti e scritti direttamente senza copie nello heap.
+ *
+ * I valori possono essere memorizzati in singola precisione, dimezzando lo spazio occupato:
+ * in questo caso le distanze sono arrotondate a {@code float} e a parità di distanza
+ * la coppia scelta può essere diversa da quella della matrice in doppia precisione.
+ * Il file viene cancellato dal sistema appena la mappatura dei segmenti viene liberata: {@link #close()}
+ * la libera subito, dove la piattaforma lo consente, invece di attendere il garbage collector.
+ * Lo spazio delle matrici non ancora rilasciate è conteggiato da {@link #fits(int, boolean)},
+ * così che i clustering concorrenti non riempiano insieme la cartella dei file temporanei.
+ */
+public class MappedDistanceMatrix extends DistanceMatrix {
+    /** Numero di esempi per lato di ciascun blocco, potenza di due. */
+    static final int TILE = 64;
+    /** Logaritmo in base due di {@link #TILE}. */
+    private static final int TILE_SHIFT = 6;
+    /** Dimensione massima in byte di un segmento mappato. */
+    private static final int SEGMENT_BYTES = 1 << 30;
+    /** Byte occupati dalle matrici su file costruite e non ancora rilasciate. */
+    private static final AtomicLong mappedBytes = new AtomicLong();
+    /**
+     * Metodo che libera subito la mappatura di un segmento ({@code sun.misc.Unsafe.invokeCleaner}),
+     * oppure {@code null} se non è disponibile e la mappatura resta al garbage collector.
+     */
+    private static final MethodHandle UNMAP = unmapper();
+
+    /** Numero di blocchi per lato della matrice. */
+    private final int tiles;
+    /** Byte occupati da ciascun valore. */
+    private final int valueBytes;
+    /** Byte occupati da ciascun blocco. */
+    private final int tileBytes;
+    /** Numero di blocchi contenuti in ciascun segmento. */
+    private final int tilesPerSegment;
+    /** Segmenti del file mappati in memoria, {@code null} dopo il rilascio. */
+    private final MappedByteBuffer[] segments;
+    /** Byte occupati dal file. */
+    private final long bytes;
+    /** Indica se la matrice è già stata rilasciata. */
+    private boolean closed = false;
+
+    /**
+     * Costruisce la matrice delle distanze in un file temporaneo nella cartella dei file temporanei del sistema.
+     *
+     * @param data Dataset di cui calcolare le distanze.
+     * @param singlePrecision {@code true} per memorizzare le distanze come {@code float}, {@code false} come {@code double}.
+     * @param pool Pool su cui calcolare i blocchi di coppie, oppure {@code null} per il calcolo sequenziale.
+     * @throws InvalidSizeException Se gli esempi hanno dimensioni diverse.
+     * @throws UncheckedIOException Se il file non può essere creato o mappato.
+     */
+    public MappedDistanceMatrix(Data data, boolean singlePrecision, ForkJoinPool pool) throws InvalidSizeException {
+        super(data.getNumberOfExample());
+        int n = size();
+        this.tiles = (n + TILE - 1) >> TILE_SHIFT;
+        this.valueBytes = singlePrecision ? Float.BYTES : Double.BYTES;
+        this.tileBytes = TILE * TILE * valueBytes;
+        this.tilesPerSegment = SEGMENT_BYTES / tileBytes;
+        long count = tileCount(tiles);
+        this.segments = new MappedByteBuffer[(int) ((count + tilesPerSegment - 1) / tilesPerSegment)];
+        this.bytes = count * tileBytes;
+
+        try {
+            Path file = Files.createTempFile(directory(), "distances", ".bin");
+            // Il file resta accessibile tramite i segmenti mappati anche dopo la chiusura del canale
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                for (int s = 0; s < segments.length; s++) {
+                    long first = (long) s * tilesPerSegment;
+                    long size = Math.min(tilesPerSegment, count - first) * tileBytes;
+                    segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, first * tileBytes, size);
+                    segments[s].order(ByteOrder.nativeOrder());
+                }
+            }
+        } catch (IOException e) {
+            unmap();
+            throw new UncheckedIOException("Impossibile creare la matrice delle distanze su file", e);
+        }
+        mappedBytes.addAndGet(bytes);
+
+        // Ogni riga di blocchi di coppie scrive righe contigue nei blocchi della propria riga di blocchi
+        // del file, che occupa una regione contigua; i thread scrivono posizioni distinte dei segmenti
+        fill(data, pool);
+    }
+
+    /**
+     * Verifica se la matrice per {@code n} esempi può essere memorizzata nella cartella dei file temporanei:
+     * insieme alle matrici su file non ancora rilasciate, deve occupare al più metà dello spazio ancora disponibile.
+     *
+     * @param n Numero di esempi del dataset.
+     * @param singlePrecision {@code true} se le distanze sono memorizzate come {@code float}.
+     * @return {@code true} se la matrice può essere costruita, altrimenti {@code false}.
+     */
+    public static boolean fits(int n, boolean singlePrecision) {
+        int tiles = (n + TILE - 1) >> TILE_SHIFT;
+        long bytes = tileCount(tiles) * TILE * TILE * (singlePrecision ? Float.BYTES : Double.BYTES);
+        try {
+            return mappedBytes.get() + bytes < Files.getFileStore(directory()).getUsableSpace() / 2;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restituisce la cartella dei file temporanei in cui creare le matrici.
+     *
+     * @return La cartella indicata dalla proprietà {@code java.io.tmpdir}.
+     */
+    private static Path directory() {
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Restituisce il numero di blocchi del triangolo superiore, diagonale compresa.
+     *
+     * @param tiles Numero di blocchi per lato.
+     * @return Numero di blocchi memorizzati.
+     */
+    private static long tileCount(int tiles) {
+        return (long) tiles * (tiles + 1) / 2;
+    }
+
+    /**
+     * Restituisce la distanza tra due esempi del dataset.
+     *
+     * @param i Indice del primo esempio.
+     * @param j Indice del secondo esempio.
+     * @return La distanza tra gli esempi {@code i} e {@code j}, nulla se coincidono.
+     */
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        long position = position(i, j);
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT_BYTES)];
+        int offset = (int) (position % SEGMENT_BYTES);
+        return valueBytes == Float.BYTES ? segment.getFloat(offset) : segment.getDouble(offset);
+    }
+
+    /**
+     * Sostituisce la distanza memorizzata per una coppia di indici.
+     *
+     * @param i Indice del primo elemento.
+     * @param j Indice del secondo elemento, diverso da {@code i}.
+     * @param value Nuova distanza tra i due elementi.
+     */
+    @Override
+    public void set(int i, int j, double value) {
+        long position = position(i, j);
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT_BYTES)];
+        int offset = (int) (position % SEGMENT_BYTES);
+        if (valueBytes == Float.BYTES) {
+            segment.putFloat(offset, (float) value);
+        } else {
+            segment.putDouble(offset, value);
+        }
+    }
+
+    /**
+     * Memorizza le distanze di un esempio da esempi consecutivi che lo seguono, contigue in ciascun blocco.
+     *
+     * @param i Indice dell'esempio.
+     * @param from Indice del primo esempio, maggiore di {@code i}.
+     * @param to Indice del primo esempio escluso.
+     * @param values Array che contiene le distanze.
+     * @param offset Posizione in {@code values} della distanza dall'esempio {@code from}.
+     */
+    @Override
+    void store(int i, int from, int to, double[] values, int offset) {
+        for (int j = from; j < to; j++) {
+            set(i, j, values[offset++]);
+        }
+    }
+
+    /**
+     * Restituisce la posizione della coppia {@code (i, j)}, con {@code i != j}, come se i segmenti fossero
+     * un unico file con {@link #SEGMENT_BYTES} byte per segmento.
+     *
+     * @param i Indice del primo elemento.
+     * @param j Indice del secondo elemento.
+     * @return Posizione in byte del valore.
+     */
+    private long position(int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        // Le righe di blocchi precedenti alla I-esima contengono I*tiles - I*(I-1)/2 blocchi
+        long bi = i >> TILE_SHIFT;
+        long bj = j >> TILE_SHIFT;
+        long tile = bi * tiles - bi * (bi - 1) / 2 + (bj - bi);
+        int cell = ((i & (TILE - 1)) << TILE_SHIFT) | (j & (TILE - 1));
+        return (tile / tilesPerSegment) * SEGMENT_BYTES + (tile % tilesPerSegment) * tileBytes + (long) cell * valueBytes;
+    }
+
+    /**
+     * Rilascia la matrice: libera la mappatura dei segmenti, così che il sistema cancelli il file,
+     * e toglie il suo spazio da quello conteggiato per le matrici in uso. Le invocazioni successive non fanno nulla.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unmap();
+        mappedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Toglie i riferimenti ai segmenti mappati e, se possibile, ne libera subito la mappatura.
+     * Dopo la liberazione un accesso al segmento terminerebbe la JVM, per cui il riferimento viene tolto prima.
+     */
+    private void unmap() {
+        for (int s = 0; s < segments.length; s++) {
+            MappedByteBuffer segment = segments[s];
+            segments[s] = null;
+            if (segment != null && UNMAP != null) {
+                try {
+                    UNMAP.invokeExact((ByteBuffer) segment);
+                } catch (Throwable e) {
+                    // La mappatura verrà liberata dal garbage collector
+                }
+            }
+        }
+    }
+
+    /**
+     * Cerca il metodo che libera la mappatura di un buffer, disponibile nel modulo {@code jdk.unsupported}.
+     *
+     * @return Il metodo legato all'istanza di {@code sun.misc.Unsafe}, oppure {@code null} se non è accessibile.
+     */
+    private static MethodHandle unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
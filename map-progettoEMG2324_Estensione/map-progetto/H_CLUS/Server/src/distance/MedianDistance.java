@@ -0,0 +1,66 @@
+package distance;
+
+import clustering.Cluster;
+import data.Data;
+
+/**
+ * Classe che implementa la distanza Median (WPGMC) tra due cluster.
+ *
+ * Come nella distanza Centroid, la distanza tra due cluster è quella tra i loro centri, ma il centro
+ * del cluster ottenuto da una fusione è il punto medio dei centri dei due cluster fusi, indipendentemente
+ * dalle loro dimensioni. I centri sono mantenuti da ciascun {@link Cluster} e aggiornati in O(d) a ogni fusione.
+ *
+ * La distanza non è riducibile: il cluster fuso può risultare più vicino a un terzo cluster
+ * di quanto lo fossero i due cluster di partenza.
+ */
+public class MedianDistance implements LanceWilliamsDistance {
+
+    /**
+     * Calcola la distanza tra i centri mediani di due cluster.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @return La distanza tra i centri dei due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d) {
+        double sum = 0.0;
+        for (int j = 0; j < d.getNumberOfAttributes(); j++) {
+            double diff = c1.getMedian(d, j) - c2.getMedian(d, j);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Calcola la distanza tra i centri mediani di due cluster; la matrice delle distanze tra esempi non è necessaria.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @param m  Matrice delle distanze tra gli esempi del dataset (non utilizzata).
+     * @return La distanza tra i centri dei due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d, DistanceMatrix m) {
+        return distance(c1, c2, d);
+    }
+
+    /**
+     * Aggiorna la distanza Median dopo una fusione: il centro del cluster fuso è il punto medio
+     * dei centri di {@code i} e {@code j}.
+     *
+     * @param dik Distanza tra i cluster {@code i} e {@code k}.
+     * @param djk Distanza tra i cluster {@code j} e {@code k}.
+     * @param dij Distanza tra i cluster {@code i} e {@code j}.
+     * @param ni  Numero di esempi del cluster {@code i}.
+     * @param nj  Numero di esempi del cluster {@code j}.
+     * @param nk  Numero di esempi del cluster {@code k}.
+     * @return La distanza tra il cluster fuso e il cluster {@code k}.
+     */
+    @Override
+    public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+        return dik / 2 + djk / 2 - dij / 4;
+    }
+}
@@ -0,0 +1,39 @@
+package distance;
+
+import clustering.Cluster;
+import data.Data;
+
+/**
+ * Variante della distanza Average Link che calcola la media delle distanze tra gli esempi di due cluster
+ * in O(d), a partire dalle statistiche mantenute da ciascun {@link Cluster}.
+ *
+ * Poiché la distanza tra esempi è la somma dei quadrati delle differenze, la sua media sulle
+ * {@code n1*n2} coppie di esempi dei due cluster vale
+ * {@code M1/n1 + M2/n2 + |c1 - c2|^2}, dove {@code c} è il centroide di un cluster e {@code M}
+ * la dispersione dei suoi esempi attorno al centroide ({@link Cluster#getScatter(Data)}).
+ * I tre termini non sono mai negativi e non si sottraggono tra loro: l'unica sottrazione è quella tra
+ * i centroidi, il cui errore è dell'ordine dell'arrotondamento delle coordinate e non del loro quadrato.
+ * Il risultato coincide così con quello di {@link AverageLinkDistance} a meno degli arrotondamenti anche
+ * per dati lontani dall'origine; a parità di distanza la coppia scelta può comunque essere diversa.
+ */
+public class StatisticsAverageLinkDistance extends AverageLinkDistance {
+
+    /**
+     * Calcola la distanza media (Average Link) tra due cluster dalle loro statistiche,
+     * senza esaminare le coppie di esempi.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @return La distanza media (Average Link) tra i due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d) {
+        double between = 0.0;
+        for (int j = 0; j < d.getNumberOfAttributes(); j++) {
+            double diff = c1.getCentroid(d, j) - c2.getCentroid(d, j);
+            between += diff * diff;
+        }
+        return c1.getScatter(d) / c1.getSize() + c2.getScatter(d) / c2.getSize() + between;
+    }
+}
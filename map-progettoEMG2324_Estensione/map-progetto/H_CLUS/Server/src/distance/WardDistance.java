@@ -0,0 +1,72 @@
+package distance;
+
+import clustering.Cluster;
+import data.Data;
+
+/**
+ * Classe che implementa la distanza di Ward tra due cluster.
+ *
+ * La distanza tra due cluster è il doppio dell'aumento della somma dei quadrati delle distanze degli esempi
+ * dal centroide del proprio cluster causato dalla loro fusione, cioè {@code 2 n1 n2 / (n1 + n2)} volte
+ * la distanza tra i centroidi: tra due esempi coincide con la distanza tra gli esempi, e a ogni livello
+ * viene fusa la coppia di cluster che fa crescere di meno la varianza interna.
+ * I centroidi si ricavano in O(d) dalle statistiche mantenute da ciascun {@link Cluster}.
+ */
+public class WardDistance implements LanceWilliamsDistance {
+
+    /**
+     * Calcola la distanza di Ward tra due cluster.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @return La distanza di Ward tra i due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d) {
+        double n1 = c1.getSize();
+        double n2 = c2.getSize();
+        return 2 * n1 * n2 / (n1 + n2) * CentroidDistance.centroidDistance(c1, c2, d);
+    }
+
+    /**
+     * Calcola la distanza di Ward tra due cluster; la matrice delle distanze tra esempi non è necessaria.
+     *
+     * @param c1 Primo cluster da confrontare.
+     * @param c2 Secondo cluster da confrontare.
+     * @param d  Dataset da cui recuperare gli esempi.
+     * @param m  Matrice delle distanze tra gli esempi del dataset (non utilizzata).
+     * @return La distanza di Ward tra i due cluster.
+     */
+    @Override
+    public double distance(Cluster c1, Cluster c2, Data d, DistanceMatrix m) {
+        return distance(c1, c2, d);
+    }
+
+    /**
+     * Aggiorna la distanza di Ward dopo una fusione con i coefficienti di Lance-Williams,
+     * che dipendono anche dalla dimensione del cluster {@code k}.
+     *
+     * @param dik Distanza tra i cluster {@code i} e {@code k}.
+     * @param djk Distanza tra i cluster {@code j} e {@code k}.
+     * @param dij Distanza tra i cluster {@code i} e {@code j}.
+     * @param ni  Numero di esempi del cluster {@code i}.
+     * @param nj  Numero di esempi del cluster {@code j}.
+     * @param nk  Numero di esempi del cluster {@code k}.
+     * @return La distanza tra il cluster fuso e il cluster {@code k}.
+     */
+    @Override
+    public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+        return ((double) (ni + nk) * dik + (double) (nj + nk) * djk - (double) nk * dij) / ((double) ni + nj + nk);
+    }
+
+    /**
+     * La distanza di Ward è riducibile.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isReducible() {
+        return true;
+    }
+}
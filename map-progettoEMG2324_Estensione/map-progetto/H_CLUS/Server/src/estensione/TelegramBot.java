@@ -7,14 +7,12 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import database.DbAccess;
+import database.SchemaCache;
 import database.DatabaseConnectionException;
 
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
@@ -32,6 +30,12 @@ import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
  * @author Elisa Vittoria Cosmai
  */
 public class TelegramBot extends TelegramLongPollingBot {
+    /** Lunghezza massima di un messaggio di testo accettata dall'API di Telegram. */
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    /** Operazioni disponibili dopo il caricamento dei dati. */
+    private static final String MENU_OPTIONS = "1. Carica Dendrogramma da File\n2. Apprendi Dendrogramma da Database\n3. Apprendi Dendrogramma da Database in singola precisione";
+    /** Distanze tra cluster disponibili, nell'ordine dei codici inviati al server. */
+    private static final String DISTANCE_OPTIONS = "1. Single-link\n2. Average-link\n3. Complete-link\n4. Ward\n5. Centroid\n6. Median";
     /** Token del bot per l'autenticazione. */
     private final String botToken;
     /** Indirizzo IP del server. */
@@ -154,12 +158,14 @@ public class TelegramBot extends TelegramLongPollingBot {
                     session.out.writeObject(2);
                     this.sendMessage(chatId, "Inserisci il nome del file con una di queste estensioni: \n.txt, .csv, .json, .xml, .dat, .bin, .ser");
                     session.state = "LOAD_FILE";
-                } else if (receivedMessage.equals("2")) {
-                    session.out.writeObject(1);
+                } else if (receivedMessage.equals("2") || receivedMessage.equals("3")) {
+                    // Il server esegue in singola precisione le richieste di clustering di tipo 6
+                    session.miningRequest = receivedMessage.equals("3") ? 6 : 1;
+                    session.out.writeObject(session.miningRequest);
                     this.sendMessage(chatId, "Inserisci la profondità del dendrogramma (da 1 a 5):");
                     session.state = "ENTER_DEPTH";
                 } else {
-                    this.sendMessage(chatId, "Scelta non valida. Scegli una opzione:\n1. Carica Dendrogramma da File\n2. Apprendi Dendrogramma da Database");
+                    this.sendMessage(chatId, "Scelta non valida. Scegli una opzione:\n" + MENU_OPTIONS);
                     session.state = "MENU";
                 }
                 break;
@@ -202,6 +208,31 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
+    /**
+     * Riceve dal server il dendrogramma, inviato come sequenza di frammenti terminata da {@code null},
+     * e lo inoltra all'utente in messaggi di al più {@link #MAX_MESSAGE_LENGTH} caratteri
+     * man mano che i frammenti arrivano, senza attendere il dendrogramma completo.
+     *
+     * @param chatId  ID della chat utente.
+     * @param session Sessione da cui leggere i frammenti.
+     * @throws IOException In caso di errore durante la comunicazione con il server.
+     * @throws ClassNotFoundException In caso di mancata corrispondenza dei dati ricevuti.
+     */
+    private void sendDendrogram(String chatId, ClientSession session) throws IOException, ClassNotFoundException {
+        StringBuilder pending = new StringBuilder();
+        Object chunk;
+        while ((chunk = session.in.readUnshared()) != null) {
+            pending.append((String) chunk);
+            while (pending.length() >= MAX_MESSAGE_LENGTH) {
+                this.sendMessage(chatId, pending.substring(0, MAX_MESSAGE_LENGTH));
+                pending.delete(0, MAX_MESSAGE_LENGTH);
+            }
+        }
+        if (pending.length() > 0) {
+            this.sendMessage(chatId, pending.toString());
+        }
+    }
+
     /**
      * Gestisce il caricamento di un dendrogramma da un file.
      * @param chatId ID della chat utente.
@@ -214,7 +245,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         session.out.writeObject(fileName);
         String risposta = (String) session.in.readObject();
         if (risposta.equals("OK")) {
-            this.sendMessage(chatId, (String) session.in.readObject());
+            this.sendDendrogram(chatId, session);
             this.sendMessage(chatId, "Sessione terminata! Scrivi /start per iniziare una nuova sessione.");
             this.closeSession(chatId);
             session.state = "START";
@@ -239,7 +270,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         session.out.writeObject(tableName);
         String risposta = (String) session.in.readObject();
         if (risposta.equals("OK")) {
-            this.sendMessage(chatId, "Scegli una opzione:\n1. Carica Dendrogramma da File\n2. Apprendi Dendrogramma da Database");
+            this.sendMessage(chatId, "Scegli una opzione:\n" + MENU_OPTIONS);
             session.state = "MENU";
         } else {
             this.sendMessage(chatId, risposta);
@@ -266,7 +297,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
         ClientSession session = this.getSession(chatId);
         session.out.writeObject(depth);
-        this.sendMessage(chatId, "Scegli il tipo di distanza:\n1. Single-link\n2. Average-link");
+        this.sendMessage(chatId, "Scegli il tipo di distanza:\n" + DISTANCE_OPTIONS);
         session.state = "ENTER_DISTANCE";
     }
 
@@ -283,24 +314,24 @@ public class TelegramBot extends TelegramLongPollingBot {
         try {
             distance = Integer.parseInt(distanceStr);
         } catch (NumberFormatException e) {
-            this.sendMessage(chatId, "Scelta non valida. Scegli una opzione:\n1. Single-link\n2. Average-link");
+            this.sendMessage(chatId, "Scelta non valida. Scegli una opzione:\n" + DISTANCE_OPTIONS);
             return;
         }
-        if (distance != 1 && distance != 2) {
-            this.sendMessage(chatId, "Scelta non valida. Scegli una opzione:\n1. Single-link\n2. Average-link");
+        if (distance < 1 || distance > 6) {
+            this.sendMessage(chatId, "Scelta non valida. Scegli una opzione:\n" + DISTANCE_OPTIONS);
             return;
         }
         ClientSession session = this.getSession(chatId);
         session.out.writeObject(distance);
         String risposta = (String) session.in.readObject();
         if (risposta.equals("OK")) {
-            this.sendMessage(chatId, (String) session.in.readObject());
+            this.sendDendrogram(chatId, session);
             this.sendMessage(chatId, "Inserisci il nome del file con una di queste estensioni: \n.txt, .csv, .json, .xml, .dat, .bin, .ser");
             session.state = "SAVE_FILE";
 
         } else {
             this.sendMessage(chatId, risposta);
-            session.out.writeObject(1);
+            session.out.writeObject(session.miningRequest);
             this.sendMessage(chatId, "Inserisci la profondità del dendrogramma (da 1 a 5):");
             session.state = "ENTER_DEPTH";
         }
@@ -366,24 +397,12 @@ public class TelegramBot extends TelegramLongPollingBot {
      * @return Lista dei nomi delle tabelle disponibili nel database.
      */
     private List<String> getTableNames() {
-        List<String> tableNames = new ArrayList<>();
-        DbAccess dbAccess = new DbAccess();
         try {
-            dbAccess.initConnection();
-            DatabaseMetaData meta = dbAccess.getConnection().getMetaData();
-            ResultSet rs = meta.getTables(null, null, "%", new String[]{"TABLE"});
-
-            while (rs.next()) {
-                tableNames.add(rs.getString("TABLE_NAME"));
-            }
-            rs.close();
-            dbAccess.closeConnection();
+            return SchemaCache.getTableNames();
         } catch (DatabaseConnectionException | SQLException e) {
             e.printStackTrace();
         }
-
-
-        return tableNames;
+        return new ArrayList<>();
     }
 
     /**
@@ -398,6 +417,8 @@ public class TelegramBot extends TelegramLongPollingBot {
         ObjectInputStream in;
         /** Stato corrente della sessione. */
         String state;
+        /** Tipo della richiesta di clustering in corso: 1 in doppia precisione, 6 in singola precisione. */
+        int miningRequest = 1;
 
         /**
          * Costruttore per la classe ClientSession.
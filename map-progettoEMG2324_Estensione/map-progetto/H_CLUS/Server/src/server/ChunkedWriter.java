@@ -0,0 +1,134 @@
+package server;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+
+/**
+ * Writer che invia al client un testo di lunghezza arbitraria come sequenza di frammenti {@link String}
+ * di al più {@link #CHUNK_SIZE} caratteri, seguita da {@code null} come marcatore di fine.
+ *
+ * I frammenti sono inviati con {@link ObjectOutputStream#writeUnshared(Object)}, così che lo stream
+ * non ne mantenga un riferimento nella tabella degli oggetti già scritti: in memoria resta
+ * un solo frammento alla volta, indipendentemente dalla lunghezza del testo.
+ * Il client legge i frammenti con {@code readUnshared()} finché non riceve {@code null}.
+ */
+class ChunkedWriter extends Writer {
+    /** Numero massimo di caratteri di ciascun frammento. */
+    static final int CHUNK_SIZE = 8192;
+
+    /** Stream su cui inviare i frammenti. */
+    private final ObjectOutputStream out;
+    /** Caratteri del frammento in costruzione. */
+    private final char[] buffer = new char[CHUNK_SIZE];
+    /** Numero di caratteri presenti nel frammento in costruzione. */
+    private int count = 0;
+    /** Indica se il marcatore di fine è già stato inviato. */
+    private boolean closed = false;
+
+    /**
+     * Costruisce un writer che invia i frammenti sullo stream specificato.
+     *
+     * @param out Stream di output verso il client.
+     */
+    ChunkedWriter(ObjectOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Accoda dei caratteri al frammento in costruzione, inviandolo ogni volta che è pieno.
+     *
+     * @param cbuf Array dei caratteri.
+     * @param off Posizione del primo carattere da scrivere.
+     * @param len Numero di caratteri da scrivere.
+     * @throws IOException Se si verifica un errore durante l'invio.
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, CHUNK_SIZE - count);
+            System.arraycopy(cbuf, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == CHUNK_SIZE) {
+                sendChunk();
+            }
+        }
+    }
+
+    /**
+     * Accoda una parte di una stringa al frammento in costruzione, senza copie intermedie.
+     *
+     * @param str Stringa da scrivere.
+     * @param off Posizione del primo carattere da scrivere.
+     * @param len Numero di caratteri da scrivere.
+     * @throws IOException Se si verifica un errore durante l'invio.
+     */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, CHUNK_SIZE - count);
+            str.getChars(off, off + n, buffer, count);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == CHUNK_SIZE) {
+                sendChunk();
+            }
+        }
+    }
+
+    /**
+     * Invia il frammento in costruzione, anche se incompleto, e svuota lo stream.
+     *
+     * @throws IOException Se si verifica un errore durante l'invio.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        sendChunk();
+        out.flush();
+    }
+
+    /**
+     * Invia il frammento in costruzione e il marcatore di fine, senza chiudere lo stream verso il client.
+     *
+     * @throws IOException Se si verifica un errore durante l'invio.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        sendChunk();
+        closed = true;
+        out.writeObject(null);
+        out.flush();
+    }
+
+    /**
+     * Invia il frammento in costruzione, se non è vuoto.
+     *
+     * @throws IOException Se si verifica un errore durante l'invio.
+     */
+    private void sendChunk() throws IOException {
+        if (count > 0) {
+            out.writeUnshared(new String(buffer, 0, count));
+            count = 0;
+        }
+    }
+
+    /**
+     * Verifica che il marcatore di fine non sia già stato inviato.
+     *
+     * @throws IOException Se il writer è già stato chiuso.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Testo già inviato completamente");
+        }
+    }
+}
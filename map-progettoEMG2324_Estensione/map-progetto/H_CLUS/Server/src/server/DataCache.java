@@ -0,0 +1,257 @@
+package server;
+
+import data.Data;
+import data.NoDataException;
+import database.SchemaCache;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memoria condivisa da tutti i client del server dei dataset caricati dal database.
+ *
+ * Un {@link Data} non viene modificato dopo la costruzione, per cui più client che lavorano sulla
+ * stessa tabella possono usare lo stesso dataset: lo ottengono con {@link #acquire(String)} e lo
+ * rilasciano con {@link #release(Data)} quando ne caricano un altro o si disconnettono. Ogni dataset
+ * è associato alla versione della tabella da cui è stato letto ({@link Data#getTableVersion(String)}):
+ * se la tabella cambia, la richiesta successiva carica un nuovo dataset, mentre chi usa il precedente
+ * continua a usarlo fino al rilascio. Se più client chiedono insieme una tabella non ancora caricata,
+ * la tabella viene letta una sola volta.
+ *
+ * Ogni dataset memorizzato è in una sola precisione: la copia in {@code float} di una tabella è un dataset
+ * a parte, ottenuto con {@link #acquire(Data, boolean)} convertendo quello in doppia precisione della stessa
+ * versione senza rileggere la tabella. Un client che passa alla singola precisione rilascia il dataset
+ * in doppia precisione, che può così essere scartato quando nessun altro client lo usa.
+ *
+ * La versione è una checksum calcolata dal server del database, che per ottenerla legge l'intera tabella:
+ * anche una richiesta servita dalla memoria costa quindi una scansione completa della tabella sul server,
+ * mentre si risparmiano il trasferimento delle righe e la costruzione del dataset.
+ * Quando un dataset viene sostituito perché la versione della tabella è cambiata, viene scartato anche
+ * lo schema della tabella memorizzato in {@link SchemaCache}, che potrebbe descrivere gli attributi precedenti.
+ *
+ * I dataset non più in uso restano in memoria finché la memoria occupata da tutti i dataset memorizzati
+ * non supera il limite indicato, oltre il quale vengono scartati a partire da quello usato meno di recente;
+ * i dataset in uso non vengono mai scartati, per cui possono far superare il limite.
+ */
+class DataCache {
+    /**
+     * Dataset di una versione di una tabella in una delle due precisioni, con il numero di client che lo stanno usando.
+     */
+    private static class Entry {
+        /** Chiave con cui il dataset è memorizzato, vedi {@link DataCache#key(String, boolean)}. */
+        final String key;
+        /** Nome della tabella. */
+        final String tableName;
+        /** Versione della tabella da cui è letto il dataset. */
+        final long version;
+        /** Dataset, oppure {@code null} finché non è stato caricato. */
+        Data data;
+        /** Numero di client che hanno ottenuto il dataset e non l'hanno ancora rilasciato. */
+        int references = 0;
+        /** Indica se la memoria del dataset è conteggiata tra quella dei dataset memorizzati. */
+        boolean counted = false;
+
+        /**
+         * Costruttore che prepara il caricamento di una versione di una tabella.
+         *
+         * @param key Chiave con cui il dataset è memorizzato.
+         * @param tableName Nome della tabella.
+         * @param version Versione della tabella.
+         */
+        Entry(String key, String tableName, long version) {
+            this.key = key;
+            this.tableName = tableName;
+            this.version = version;
+        }
+
+        /**
+         * Restituisce il dataset, costruendolo alla prima richiesta; le richieste concorrenti
+         * attendono la costruzione invece di ripeterla.
+         *
+         * @param source Dataset in doppia precisione della stessa versione da convertire in singola precisione,
+         *               oppure {@code null} per caricare la tabella dal database.
+         * @return Il dataset della tabella.
+         * @throws NoDataException Se la tabella è vuota o si verifica un errore durante il caricamento.
+         */
+        synchronized Data load(Data source) throws NoDataException {
+            if (data == null) {
+                data = source != null ? source.toSinglePrecision() : new Data(tableName);
+            }
+            return data;
+        }
+    }
+
+    /** Memoria massima occupata dai dataset memorizzati, in byte. */
+    private final long maxBytes;
+    /** Dataset memorizzati, indicizzati per tabella e precisione, dal meno al più recentemente usato. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Dataset in uso, compresi quelli di versioni non più memorizzate. */
+    private final Map<Data, Entry> acquired = new IdentityHashMap<>();
+    /** Memoria occupata dai dataset memorizzati, in byte. */
+    private long bytes = 0;
+
+    /**
+     * Costruttore che inizializza una memoria vuota con il limite indicato.
+     *
+     * @param maxBytes Memoria massima occupata dai dataset non in uso, in byte; con 0 sono scartati al rilascio.
+     */
+    DataCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Il limite di memoria non può essere negativo: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce il dataset della versione corrente di una tabella, caricandolo solo se non è già in memoria.
+     * Il dataset va rilasciato con {@link #release(Data)} quando non serve più.
+     *
+     * @param tableName Nome della tabella.
+     * @return Il dataset della tabella in doppia precisione, da non modificare.
+     * @throws NoDataException Se la tabella è vuota o si verifica un errore durante il caricamento.
+     */
+    Data acquire(String tableName) throws NoDataException {
+        // La versione è letta prima dei dati: un dataset non è mai più vecchio della versione a cui è associato
+        return acquire(tableName, false, Data.getTableVersion(tableName), null);
+    }
+
+    /**
+     * Restituisce la stessa tabella di un dataset già ottenuto nella precisione richiesta.
+     * In singola precisione è la copia della stessa versione, costruita senza rileggere la tabella solo se
+     * non è già in memoria; in doppia precisione è il dataset della versione corrente, come con {@link #acquire(String)}.
+     * Il dataset restituito va rilasciato con {@link #release(Data)}, come quello di partenza.
+     *
+     * @param data Dataset ottenuto da questa memoria e non ancora rilasciato.
+     * @param singlePrecision {@code true} per la singola precisione, {@code false} per la doppia.
+     * @return Il dataset della tabella nella precisione richiesta, da non modificare.
+     * @throws NoDataException Se si verifica un errore durante il caricamento della tabella.
+     */
+    Data acquire(Data data, boolean singlePrecision) throws NoDataException {
+        Entry source;
+        synchronized (this) {
+            source = acquired.get(data);
+            if (source == null) {
+                throw new IllegalArgumentException("Il dataset non è stato ottenuto da questa memoria");
+            }
+            if (data.isSinglePrecision() == singlePrecision) {
+                source.references++;
+                return data;
+            }
+        }
+        if (!singlePrecision) {
+            return acquire(source.tableName);
+        }
+        return acquire(source.tableName, true, source.version, data);
+    }
+
+    /**
+     * Restituisce il dataset di una versione di una tabella nella precisione indicata,
+     * sostituendo quello memorizzato se appartiene a un'altra versione.
+     *
+     * @param tableName Nome della tabella.
+     * @param singlePrecision {@code true} per il dataset in singola precisione.
+     * @param version Versione della tabella.
+     * @param source Dataset in doppia precisione della stessa versione da convertire, oppure {@code null}.
+     * @return Il dataset richiesto.
+     * @throws NoDataException Se la tabella è vuota o si verifica un errore durante il caricamento.
+     */
+    private Data acquire(String tableName, boolean singlePrecision, long version, Data source) throws NoDataException {
+        String key = key(tableName, singlePrecision);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.version != version) {
+                if (entry != null) {
+                    // La tabella è cambiata: lo schema memorizzato potrebbe non descriverla più
+                    remove(entry);
+                    SchemaCache.invalidate(tableName);
+                }
+                entry = new Entry(key, tableName, version);
+                entries.put(key, entry);
+            }
+            entry.references++;
+        }
+
+        Data data;
+        try {
+            data = entry.load(source);
+        } catch (NoDataException e) {
+            synchronized (this) {
+                entry.references--;
+                if (entry.data == null && entries.get(key) == entry && entry.references == 0) {
+                    entries.remove(key);
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            acquired.put(data, entry);
+            if (!entry.counted && entries.get(key) == entry) {
+                entry.counted = true;
+                bytes += data.getSizeInBytes();
+                evict();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Rilascia un dataset ottenuto da questa memoria; se nessun client lo usa più,
+     * può essere scartato per rispettare il limite di memoria.
+     *
+     * @param data Dataset da rilasciare, oppure {@code null}.
+     */
+    synchronized void release(Data data) {
+        Entry entry = data != null ? acquired.get(data) : null;
+        if (entry == null) {
+            return;
+        }
+        if (--entry.references == 0) {
+            acquired.remove(data);
+            evict();
+        }
+    }
+
+    /**
+     * Restituisce la chiave con cui è memorizzato il dataset di una tabella in una precisione.
+     * I nomi delle tabelle non contengono spazi, per cui le chiavi non si confondono.
+     *
+     * @param tableName Nome della tabella.
+     * @param singlePrecision {@code true} per il dataset in singola precisione.
+     * @return La chiave del dataset.
+     */
+    private static String key(String tableName, boolean singlePrecision) {
+        return singlePrecision ? tableName + " float" : tableName;
+    }
+
+    /**
+     * Scarta i dataset non in uso, dal meno recentemente usato, finché la memoria occupata non rientra nel limite.
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.references == 0 && entry.counted) {
+                it.remove();
+                entry.counted = false;
+                bytes -= entry.data.getSizeInBytes();
+            }
+        }
+    }
+
+    /**
+     * Toglie dalla memoria il dataset di una versione superata di una tabella; chi lo usa può continuare a farlo.
+     *
+     * @param entry Dataset da togliere.
+     */
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        if (entry.counted) {
+            entry.counted = false;
+            bytes -= entry.data.getSizeInBytes();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Classe che gestisce il server principale utilizzando un approccio multi-threaded.
@@ -24,6 +25,10 @@ public class MultiServer {
     private static MultiServer singleton = null;
     /** Istanza di {@link TelegramBotsApi} per la gestione del bot Telegram. */
     private static TelegramBotsApi telegramBot;
+    /** Pool dedicato al clustering, separato dal pool comune e condiviso da tutti i client. */
+    private static ForkJoinPool miningPool;
+    /** Dataset caricati dal database, condivisi da tutti i client. */
+    private static DataCache dataCache;
 
     /**
      * Costruttore privato della classe, inizializza la porta e avvia il server.
@@ -44,6 +49,40 @@ public class MultiServer {
      * @param port    La porta su cui avviare il server.
      */
     public static void instanceMultiServer(String token, String address, int port) {
+        instanceMultiServer(token, address, port, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Metodo statico per ottenere un'istanza di {@link MultiServer}, specificando il numero di thread
+     * dedicati alla ricerca delle coppie di cluster più vicine durante il clustering.
+     *
+     * @param token       Il token del bot Telegram.
+     * @param address     L'indirizzo del server.
+     * @param port        La porta su cui avviare il server.
+     * @param parallelism Il numero di thread del pool di clustering; con 1 il clustering è sequenziale.
+     */
+    public static void instanceMultiServer(String token, String address, int port, int parallelism) {
+        instanceMultiServer(token, address, port, parallelism, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * Metodo statico per ottenere un'istanza di {@link MultiServer}, specificando il numero di thread
+     * del clustering e la memoria riservata ai dataset caricati dal database e non più in uso.
+     *
+     * @param token       Il token del bot Telegram.
+     * @param address     L'indirizzo del server.
+     * @param port        La porta su cui avviare il server.
+     * @param parallelism Il numero di thread del pool di clustering; con 1 il clustering è sequenziale.
+     * @param cacheBytes  La memoria massima, in byte, dei dataset condivisi tra i client; con 0 un dataset
+     *                    è condiviso solo finché qualche client lo usa.
+     */
+    public static void instanceMultiServer(String token, String address, int port, int parallelism, long cacheBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Il numero di thread deve essere almeno 1");
+        }
+        miningPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        dataCache = new DataCache(cacheBytes);
+
         try {
             telegramBot = new TelegramBotsApi(DefaultBotSession.class);
             telegramBot.registerBot(new TelegramBot(token, address, port));
@@ -69,7 +108,7 @@ public class MultiServer {
                 Socket socket = s.accept();
                 System.out.println("Connessione client: " + socket);
                 try {
-                    new ServerOneClient(socket, telegramBot);
+                    new ServerOneClient(socket, telegramBot, miningPool, dataCache);
                 } catch (IOException e) {
                     System.out.println("Errore nella creazione del socket: " + socket);
                     socket.close();
@@ -6,16 +6,22 @@ import clustering.InvalidDepthException;
 import data.Data;
 import data.InvalidSizeException;
 import data.NoDataException;
-import distance.AverageLinkDistance;
+import distance.CentroidDistance;
 import distance.ClusterDistance;
+import distance.CompleteLinkDistance;
+import distance.MedianDistance;
 import distance.SingleLinkDistance;
+import distance.StatisticsAverageLinkDistance;
+import distance.WardDistance;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Classe che gestisce la connessione e le richieste di un singolo client al server.
@@ -31,12 +37,19 @@ class ServerOneClient extends Thread {
     private final ObjectOutputStream out;
     /** Stream di input per ricevere dati dal client. */
     private final ObjectInputStream in;
-    /** Oggetto per gestire i dati caricati dal database. */
+    /**
+     * Oggetto per gestire i dati caricati dal database, ottenuto da {@link #dataCache}: in singola precisione
+     * dopo un clustering in singola precisione, fino al clustering successivo in doppia precisione.
+     */
     private Data data;
     /** Mantiene il dendrogramma generato. */
     private HierachicalClusterMiner clustering;
     /** Istanza del bot Telegram. */
     TelegramBotsApi bot;
+    /** Pool dedicato al clustering condiviso dal server, oppure {@code null} per il clustering sequenziale. */
+    private final ForkJoinPool miningPool;
+    /** Dataset caricati dal database, condivisi dal server. */
+    private final DataCache dataCache;
 
     /**
      * Costruttore della classe {@link ServerOneClient}.
@@ -44,11 +57,16 @@ class ServerOneClient extends Thread {
      *
      * @param socket    Il socket associato al client.
      * @param telegramBot L'istanza del bot Telegram.
+     * @param miningPool Pool dedicato al clustering, oppure {@code null} per il clustering sequenziale.
+     * @param dataCache Dataset caricati dal database, condivisi dal server.
      * @throws IOException Se si verifica un errore nella creazione degli stream.
      */
-    public ServerOneClient(Socket socket, TelegramBotsApi telegramBot) throws IOException {
+    public ServerOneClient(Socket socket, TelegramBotsApi telegramBot, ForkJoinPool miningPool, DataCache dataCache) throws IOException {
         this.clientSocket = socket;
-        this.out = new ObjectOutputStream(clientSocket.getOutputStream());
+        this.miningPool = miningPool;
+        this.dataCache = dataCache;
+        this.out = new ObjectOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+        this.out.flush(); // il client attende l'intestazione dello stream prima di inviare richieste
         this.in = new ObjectInputStream(clientSocket.getInputStream());
         this.bot = telegramBot;
         this.clustering = null; // Inizialmente non c'è un dendrogramma
@@ -69,7 +87,7 @@ class ServerOneClient extends Thread {
                         handleLoadData();
                         break;
                     case 1:
-                        handleClustering();
+                        handleClustering(false);
                         break;
                     case 2:
                         handleLoadDendrogramFromFile();
@@ -77,16 +95,27 @@ class ServerOneClient extends Thread {
                     case 3:
                         handleSaveDendrogram();
                         break;
+                    case 4:
+                        handleLevelQuery();
+                        break;
+                    case 5:
+                        handleCut();
+                        break;
+                    case 6:
+                        handleClustering(true);
+                        break;
                     default:
                         out.writeObject("Tipo di richiesta non valido");
                         break;
                 }
+                out.flush();
             }
         } catch (IOException e) {
             System.out.println("Disconnessione client: " + clientSocket);
         } catch (ClassNotFoundException e) {
             System.out.println("Errore nella lettura dell'oggetto: " + e.getMessage());
         } finally {
+            dataCache.release(data);
             try {
                 clientSocket.close();
                 out.close();
@@ -99,13 +128,16 @@ class ServerOneClient extends Thread {
 
     /**
      * Carica i dati dal database specificato dal client.
+     * Se la stessa versione della tabella è già stata caricata, il dataset viene condiviso invece di essere riletto.
      * @throws IOException Se si verifica un errore durante la comunicazione con il client.
      * @throws ClassNotFoundException Se si verifica un errore durante la lettura dell'oggetto dal client.
      */
     private void handleLoadData() throws IOException, ClassNotFoundException {
         String tableName = (String) in.readObject();
         try {
-            this.data = new Data(tableName); // Carica i dati dal database
+            Data loaded = dataCache.acquire(tableName); // Carica i dati dal database, se non sono già in memoria
+            dataCache.release(this.data);
+            this.data = loaded;
             out.writeObject("OK");
         } catch (NoDataException e) {
             out.writeObject(e.getMessage());
@@ -114,10 +146,17 @@ class ServerOneClient extends Thread {
 
     /**
      * Esegue il clustering sui dati caricati.
+     * Se la precisione richiesta è diversa da quella dei dati caricati, i dati vengono sostituiti con quelli
+     * della stessa tabella nella precisione richiesta, ottenuti da {@link DataCache}, e quelli precedenti
+     * vengono rilasciati: il client tiene in uso una sola copia dei dati, che è anche quella usata per
+     * salvare e mostrare il dendrogramma. In singola precisione il dendrogramma inviato termina con una
+     * nota che segnala le fusioni a parità di distanza, che potrebbero essere state risolte diversamente
+     * in doppia precisione.
+     * @param singlePrecision {@code true} per eseguire il clustering in singola precisione.
      * @throws IOException Se si verifica un errore durante la comunicazione con il client.
      * @throws ClassNotFoundException Se si verifica un errore durante la lettura dell'oggetto dal client.
      */
-    private void handleClustering() throws IOException, ClassNotFoundException {
+    private void handleClustering(boolean singlePrecision) throws IOException, ClassNotFoundException {
         if (data == null) {
             out.writeObject("Dati non caricati");
             return;
@@ -126,13 +165,24 @@ class ServerOneClient extends Thread {
         int depth = (int) in.readObject();
         int distanceType = (int) in.readObject();
 
+        if (data.isSinglePrecision() != singlePrecision) {
+            try {
+                Data converted = dataCache.acquire(data, singlePrecision);
+                dataCache.release(data);
+                data = converted;
+            } catch (NoDataException e) {
+                out.writeObject(e.getMessage());
+                return;
+            }
+        }
+
         try {
             this.clustering = new HierachicalClusterMiner(depth);
-            ClusterDistance distance = (distanceType == 1) ? new SingleLinkDistance() : new AverageLinkDistance();
-            clustering.mine(data, distance);
+            ClusterDistance distance = distanceOf(distanceType);
+            clustering.mine(data, distance, miningPool);
 
             out.writeObject("OK");
-            out.writeObject(clustering.toString(data));
+            sendDendrogram(singlePrecision ? precisionNote() : null);
 
         } catch (InvalidSizeException | InvalidClustersNumberException | InvalidDepthException | IllegalArgumentException e) {
             out.writeObject(e.getMessage());
@@ -140,6 +190,31 @@ class ServerOneClient extends Thread {
     }
 
 
+    /**
+     * Restituisce la distanza tra cluster corrispondente al codice inviato dal client.
+     * @param distanceType Codice della distanza: 1 single-link, 2 average-link, 3 complete-link, 4 Ward, 5 centroid, 6 median.
+     * @return La distanza tra cluster richiesta.
+     * @throws IllegalArgumentException Se il codice non corrisponde ad alcuna distanza.
+     */
+    private static ClusterDistance distanceOf(int distanceType) {
+        switch (distanceType) {
+            case 1:
+                return new SingleLinkDistance();
+            case 2:
+                return new StatisticsAverageLinkDistance();
+            case 3:
+                return new CompleteLinkDistance();
+            case 4:
+                return new WardDistance();
+            case 5:
+                return new CentroidDistance();
+            case 6:
+                return new MedianDistance();
+            default:
+                throw new IllegalArgumentException("Tipo di distanza non valido: " + distanceType);
+        }
+    }
+
     /**
      * Salva il dendrogramma generato su file.
      * @throws IOException Se si verifica un errore durante la comunicazione con il client.
@@ -169,6 +244,75 @@ class ServerOneClient extends Thread {
     }
 
 
+    /**
+     * Invia al client soltanto i livelli richiesti del dendrogramma corrente.
+     * Il client invia il primo e l'ultimo livello dell'intervallo, inclusi; per un singolo livello coincidono.
+     * @throws IOException Se si verifica un errore durante la comunicazione con il client.
+     * @throws ClassNotFoundException Se si verifica un errore durante la lettura dell'oggetto dal client.
+     */
+    private void handleLevelQuery() throws IOException, ClassNotFoundException {
+        int fromLevel = (int) in.readObject();
+        int toLevel = (int) in.readObject();
+
+        if (clustering == null) {
+            out.writeObject("Errore: Nessun dendrogramma disponibile.");
+            return;
+        }
+        if (data == null) {
+            out.writeObject("Dati non caricati");
+            return;
+        }
+        if (clustering.getDepth() > data.getNumberOfExample()) {
+            out.writeObject("Errore: Il numero di esempi è inferiore alla profondità del dendrogramma!");
+            return;
+        }
+
+        try {
+            clustering.checkLevels(fromLevel, toLevel);
+        } catch (InvalidDepthException e) {
+            out.writeObject(e.getMessage());
+            return;
+        }
+
+        out.writeObject("OK");
+        try (ChunkedWriter writer = new ChunkedWriter(out)) {
+            clustering.write(writer, data, fromLevel, toLevel);
+        } catch (InvalidDepthException e) {
+            throw new IllegalStateException(e); // l'intervallo è già stato verificato
+        }
+    }
+
+
+    /**
+     * Ricava il dendrogramma corrente con una profondità diversa dall'albero di copertura conservato nel modello,
+     * senza ripetere il clustering, e lo invia al client; il nuovo dendrogramma sostituisce quello corrente.
+     * @throws IOException Se si verifica un errore durante la comunicazione con il client.
+     * @throws ClassNotFoundException Se si verifica un errore durante la lettura dell'oggetto dal client.
+     */
+    private void handleCut() throws IOException, ClassNotFoundException {
+        int depth = (int) in.readObject();
+
+        if (clustering == null) {
+            out.writeObject("Errore: Nessun dendrogramma disponibile.");
+            return;
+        }
+        if (data == null) {
+            out.writeObject("Dati non caricati");
+            return;
+        }
+
+        try {
+            this.clustering = clustering.cut(depth, data);
+        } catch (InvalidDepthException | InvalidSizeException e) {
+            out.writeObject(e.getMessage());
+            return;
+        }
+
+        out.writeObject("OK");
+        sendDendrogram();
+    }
+
+
     /**
      * Carica un dendrogramma salvato su file.
      * @throws IOException Se si verifica un errore durante la comunicazione con il client.
@@ -178,20 +322,59 @@ class ServerOneClient extends Thread {
         String fileName = (String) in.readObject();
         try {
             this.clustering = HierachicalClusterMiner.loadHierachicalClusterMiner(fileName);
+        } catch (IOException | ClassNotFoundException e) {
+            out.writeObject(e.getMessage());
+            return;
+        }
 
-            if (data == null) {
-                out.writeObject("Dati non caricati");
-                return;
-            }
+        if (data == null) {
+            out.writeObject("Dati non caricati");
+            return;
+        }
+
+        if (clustering.getDepth() > data.getNumberOfExample()) {
+            out.writeObject("Errore: Il numero di esempi è inferiore alla profondità del dendrogramma!");
+        } else {
+            out.writeObject("OK");
+            // Gli errori di comunicazione durante l'invio chiudono la connessione, come nelle altre richieste
+            sendDendrogram();
+        }
+    }
+
+    /**
+     * Invia al client il dendrogramma corrente con i dati degli esempi, livello per livello,
+     * come sequenza di frammenti terminata da {@code null} (vedi {@link ChunkedWriter}).
+     * @throws IOException Se si verifica un errore durante la comunicazione con il client.
+     */
+    private void sendDendrogram() throws IOException {
+        sendDendrogram(null);
+    }
 
-            if (clustering.getDepth() > data.getNumberOfExample()) {
-                out.writeObject("Errore: Il numero di esempi è inferiore alla profondità del dendrogramma!");
-            } else {
-                out.writeObject("OK");
-                out.writeObject(clustering.toString(data));
+    /**
+     * Invia al client il dendrogramma corrente seguito da una nota, nello stesso stream di frammenti.
+     * @param note Testo da accodare al dendrogramma, oppure {@code null}.
+     * @throws IOException Se si verifica un errore durante la comunicazione con il client.
+     */
+    private void sendDendrogram(String note) throws IOException {
+        try (ChunkedWriter writer = new ChunkedWriter(out)) {
+            clustering.write(writer, data);
+            if (note != null) {
+                writer.write(note);
             }
-        } catch (IOException | ClassNotFoundException | InvalidDepthException e) {
-            out.writeObject(e.getMessage());
         }
     }
+
+    /**
+     * Compone la nota che accompagna un dendrogramma costruito in singola precisione.
+     * @return La nota, con il numero di fusioni avvenute alla stessa distanza di un'altra.
+     */
+    private String precisionNote() {
+        int ties = clustering.countTiedMerges();
+        String note = "\nClustering eseguito in singola precisione.";
+        if (ties > 0) {
+            note += " " + ties + " fusioni sono avvenute alla stessa distanza di un'altra: in doppia precisione"
+                    + " le parità potrebbero essere state risolte diversamente.";
+        }
+        return note + "\n";
+    }
 }
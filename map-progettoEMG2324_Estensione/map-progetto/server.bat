@@ -1,5 +1,5 @@
 @echo off
 
-java -cp "server.jar;.idea/libraries/*" Main
+java --add-modules jdk.incubator.vector -cp "server.jar;.idea/libraries/*" Main
 
 exit
\ No newline at end of file